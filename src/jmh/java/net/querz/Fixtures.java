@@ -0,0 +1,202 @@
+package net.querz;
+
+import net.querz.mca.Chunk;
+import net.querz.mca.MCAFile;
+import net.querz.mca.MCAUtil;
+import net.querz.nbt.io.NBTSerializer;
+import net.querz.nbt.io.NamedTag;
+import net.querz.nbt.io.SNBTUtil;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.StringTag;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Deterministic benchmark fixtures resembling the files Minecraft writes.
+ * The region files are the ones used by the unit tests, r.2.2.mca was written by 1.13
+ * and r.0.0.mca by 1.15 with 3d biomes.
+ * */
+public final class Fixtures {
+
+	public static final String OLD_REGION = "r.2.2.mca";
+	public static final String NEW_REGION = "r.0.0.mca";
+
+	private static final String[] ITEMS = {
+			"minecraft:diamond_sword", "minecraft:cobblestone", "minecraft:torch", "minecraft:oak_log",
+			"minecraft:bread", "minecraft:iron_pickaxe", "minecraft:redstone", "minecraft:white_wool"
+	};
+
+	private Fixtures() {}
+
+	/**
+	 * @return A player.dat root tag with a full inventory, an ender chest, attributes and recipes.
+	 * */
+	public static CompoundTag playerDat() {
+		Random random = new Random(42);
+		CompoundTag player = new CompoundTag();
+		player.putInt("DataVersion", 2230);
+		player.put("Pos", doubles(random.nextDouble() * 1000, 64.0, random.nextDouble() * 1000));
+		player.put("Motion", doubles(0.0, -0.0784000015258789, 0.0));
+		ListTag<FloatTag> rotation = new ListTag<>(FloatTag.class);
+		rotation.addFloat(random.nextFloat() * 360);
+		rotation.addFloat(random.nextFloat() * 90);
+		player.put("Rotation", rotation);
+		player.putFloat("Health", 20.0f);
+		player.putInt("foodLevel", 20);
+		player.putFloat("foodSaturationLevel", 5.0f);
+		player.putInt("XpLevel", 30);
+		player.putFloat("XpP", 0.25f);
+		player.putInt("playerGameType", 0);
+		player.putString("Dimension", "minecraft:overworld");
+		player.putLong("UUIDMost", random.nextLong());
+		player.putLong("UUIDLeast", random.nextLong());
+		player.put("Inventory", items(random, 36));
+		player.put("EnderItems", items(random, 27));
+		ListTag<CompoundTag> attributes = new ListTag<>(CompoundTag.class);
+		String[] names = {"generic.maxHealth", "generic.movementSpeed", "generic.armor", "generic.attackDamage", "generic.luck"};
+		for (String name : names) {
+			CompoundTag attribute = new CompoundTag();
+			attribute.putString("Name", name);
+			attribute.putDouble("Base", random.nextDouble() * 20);
+			attributes.add(attribute);
+		}
+		player.put("Attributes", attributes);
+		CompoundTag recipeBook = new CompoundTag();
+		ListTag<StringTag> recipes = new ListTag<>(StringTag.class);
+		for (int i = 0; i < 400; i++) {
+			recipes.addString("minecraft:recipe_" + i);
+		}
+		recipeBook.put("recipes", recipes);
+		recipeBook.put("toBeDisplayed", recipes.clone());
+		player.put("recipeBook", recipeBook);
+		return player;
+	}
+
+	/**
+	 * @return A level.dat root tag with game rules, dimension data and a player.
+	 * */
+	public static CompoundTag levelDat() {
+		Random random = new Random(43);
+		CompoundTag data = new CompoundTag();
+		data.putInt("DataVersion", 2230);
+		data.putString("LevelName", "Benchmark World");
+		data.putLong("RandomSeed", random.nextLong());
+		data.putLong("Time", 1234567L);
+		data.putLong("DayTime", 7000L);
+		data.putInt("SpawnX", 128);
+		data.putInt("SpawnY", 64);
+		data.putInt("SpawnZ", -256);
+		data.putByte("allowCommands", (byte) 1);
+		data.putString("generatorName", "default");
+		CompoundTag gameRules = new CompoundTag();
+		for (int i = 0; i < 40; i++) {
+			gameRules.putString("rule" + i, random.nextBoolean() ? "true" : Integer.toString(random.nextInt(100)));
+		}
+		data.put("GameRules", gameRules);
+		CompoundTag dimensionData = new CompoundTag();
+		CompoundTag dragonFight = new CompoundTag();
+		dragonFight.putByte("DragonKilled", (byte) 1);
+		dragonFight.putIntArray("Gateways", new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19});
+		dimensionData.put("1", dragonFight);
+		data.put("DimensionData", dimensionData);
+		data.put("Player", playerDat());
+		CompoundTag root = new CompoundTag();
+		root.put("Data", data);
+		return root;
+	}
+
+	/**
+	 * @return The first chunk of {@link #OLD_REGION} with its sections and heightmaps.
+	 * @throws IOException If the region file could not be read.
+	 * */
+	public static CompoundTag chunk() throws IOException {
+		return MCAUtil.read(copyResource(OLD_REGION)).getChunk(0).updateHandle(0, 0);
+	}
+
+	/**
+	 * @return A large SNBT string built from all chunks of {@link #OLD_REGION}.
+	 * @throws IOException If the region file could not be read.
+	 * */
+	public static String largeSNBT() throws IOException {
+		MCAFile mcaFile = MCAUtil.read(copyResource(OLD_REGION));
+		ListTag<CompoundTag> chunks = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 1024; i++) {
+			Chunk chunk = mcaFile.getChunk(i);
+			if (chunk != null) {
+				chunks.add(chunk.updateHandle(i & 0x1F, i >> 5));
+			}
+		}
+		CompoundTag root = new CompoundTag();
+		root.put("chunks", chunks);
+		root.put("player", playerDat());
+		return SNBTUtil.toSNBT(root);
+	}
+
+	/**
+	 * @param tag The tag to serialize.
+	 * @return The uncompressed binary NBT representation of {@code tag} with an empty name.
+	 * @throws IOException If the tag could not be serialized.
+	 * */
+	public static byte[] toBytes(CompoundTag tag) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new NBTSerializer(false).toStream(new NamedTag("", tag), baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Copies a resource to a temporary file that is deleted when the JVM exits.
+	 * @param name The name of the resource.
+	 * @return The temporary file.
+	 * @throws IOException If the resource does not exist or could not be copied.
+	 * */
+	public static File copyResource(String name) throws IOException {
+		try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException("resource \"" + name + "\" not found");
+			}
+			File file = File.createTempFile("nbt-bench", name);
+			file.deleteOnExit();
+			Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return file;
+		}
+	}
+
+	private static ListTag<DoubleTag> doubles(double... values) {
+		ListTag<DoubleTag> list = new ListTag<>(DoubleTag.class);
+		for (double value : values) {
+			list.addDouble(value);
+		}
+		return list;
+	}
+
+	private static ListTag<CompoundTag> items(Random random, int slots) {
+		ListTag<CompoundTag> items = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < slots; i++) {
+			CompoundTag item = new CompoundTag();
+			item.putByte("Slot", (byte) i);
+			item.putString("id", ITEMS[random.nextInt(ITEMS.length)]);
+			item.putByte("Count", (byte) (1 + random.nextInt(64)));
+			if (random.nextInt(4) == 0) {
+				CompoundTag tag = new CompoundTag();
+				tag.putInt("Damage", random.nextInt(1500));
+				ListTag<CompoundTag> enchantments = new ListTag<>(CompoundTag.class);
+				CompoundTag enchantment = new CompoundTag();
+				enchantment.putString("id", "minecraft:unbreaking");
+				enchantment.putShort("lvl", (short) 3);
+				enchantments.add(enchantment);
+				tag.put("Enchantments", enchantments);
+				item.put("tag", tag);
+			}
+			items.add(item);
+		}
+		return items;
+	}
+}
@@ -0,0 +1,55 @@
+package net.querz.mca;
+
+import net.querz.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing of complete region files.
+ * */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MCAFileBenchmark {
+
+	@Param({Fixtures.OLD_REGION, Fixtures.NEW_REGION})
+	public String region;
+
+	private File file;
+	private File out;
+	private MCAFile mcaFile;
+
+	@Setup
+	public void setup() throws IOException {
+		file = Fixtures.copyResource(region);
+		out = File.createTempFile("nbt-bench", region);
+		out.deleteOnExit();
+		mcaFile = MCAUtil.read(file);
+	}
+
+	@TearDown
+	public void tearDown() {
+		out.delete();
+	}
+
+	@Benchmark
+	public MCAFile deserialize() throws IOException {
+		return MCAUtil.read(file);
+	}
+
+	@Benchmark
+	public int serialize() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(out, "rw")) {
+			raf.setLength(0);
+			return mcaFile.serialize(raf);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package net.querz.mca;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block state access of a full section with 5 bits per block in both block state layouts:
+ * values spanning two longs before DataVersion 2527 and padded longs since.
+ * */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SectionBenchmark {
+
+	private static final int BITS = 5;
+
+	@Param({"2230", "2566"})
+	public int dataVersion;
+
+	private Section section;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(44);
+		ListTag<CompoundTag> palette = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 1 << BITS; i++) {
+			CompoundTag state = new CompoundTag();
+			state.putString("Name", "minecraft:block_" + i);
+			palette.add(state);
+		}
+		long[] blockStates;
+		if (dataVersion < 2527) {
+			blockStates = new long[BITS * 64];
+			for (int i = 0; i < 4096; i++) {
+				long value = random.nextInt(1 << BITS);
+				int bit = i * BITS;
+				blockStates[bit >> 6] |= value << (bit & 63);
+				if ((bit & 63) + BITS > 64) {
+					blockStates[(bit >> 6) + 1] |= value >>> (64 - (bit & 63));
+				}
+			}
+		} else {
+			int perLong = 64 / BITS;
+			blockStates = new long[(4096 + perLong - 1) / perLong];
+			for (int i = 0; i < 4096; i++) {
+				long value = random.nextInt(1 << BITS);
+				blockStates[i / perLong] |= value << (i % perLong * BITS);
+			}
+		}
+		CompoundTag root = new CompoundTag();
+		root.putByte("Y", (byte) 0);
+		root.put("Palette", palette);
+		root.putLongArray("BlockStates", blockStates);
+		section = new Section(root, dataVersion);
+	}
+
+	@Benchmark
+	public int getPaletteIndex() {
+		int sum = 0;
+		for (int i = 0; i < 4096; i++) {
+			sum += section.getPaletteIndex(i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int getBlockStateAt() {
+		int sum = 0;
+		for (int y = 0; y < 16; y++) {
+			for (int z = 0; z < 16; z++) {
+				for (int x = 0; x < 16; x++) {
+					sum += section.getBlockStateAt(x, y, z).size();
+				}
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,41 @@
+package net.querz.nbt.io;
+
+import net.querz.Fixtures;
+import net.querz.nbt.tag.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and writing of a large SNBT string containing all chunks of a region file.
+ * */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SNBTBenchmark {
+
+	private String snbt;
+	private Tag<?> tag;
+
+	@Setup
+	public void setup() throws IOException {
+		snbt = Fixtures.largeSNBT();
+		tag = SNBTParser.parse(snbt);
+	}
+
+	@Benchmark
+	public Tag<?> parse() throws ParseException {
+		return SNBTParser.parse(snbt);
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		StringWriter writer = new StringWriter(snbt.length());
+		SNBTWriter.write(tag, writer);
+		return writer.getBuffer().length();
+	}
+}
@@ -0,0 +1,86 @@
+package net.querz.nbt.tag;
+
+import net.querz.Fixtures;
+import net.querz.nbt.io.NBTBufferReader;
+import net.querz.nbt.io.NBTBufferWriter;
+import net.querz.nbt.io.NBTInputStream;
+import net.querz.nbt.io.NBTView;
+import net.querz.nbt.io.NamedTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary NBT reading and writing of uncompressed player.dat, level.dat and chunk data,
+ * through the stream classes, through {@link NBTBufferReader} and {@link NBTBufferWriter},
+ * and indexing it with an {@link NBTView}.
+ * */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagBenchmark {
+
+	@Param({"player.dat", "level.dat", "chunk"})
+	public String fixture;
+
+	private CompoundTag tag;
+	private byte[] data;
+	private ByteArrayOutputStream sink;
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setup() throws IOException {
+		switch (fixture) {
+			case "player.dat":
+				tag = Fixtures.playerDat();
+				break;
+			case "level.dat":
+				tag = Fixtures.levelDat();
+				break;
+			default:
+				tag = Fixtures.chunk();
+		}
+		data = Fixtures.toBytes(tag);
+		sink = new ByteArrayOutputStream(data.length);
+		buffer = ByteBuffer.allocate(data.length);
+	}
+
+	@Benchmark
+	public NamedTag read() throws IOException {
+		return new NBTInputStream(new ByteArrayInputStream(data)).readTag(Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		sink.reset();
+		DataOutputStream out = new DataOutputStream(sink);
+		tag.write(out, Tag.DEFAULT_MAX_DEPTH);
+		out.flush();
+		return sink.size();
+	}
+
+	@Benchmark
+	public NamedTag readBuffer() throws IOException {
+		return new NBTBufferReader(ByteBuffer.wrap(data)).readTag(Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	@Benchmark
+	public NBTView view() throws IOException {
+		return NBTView.of(data);
+	}
+
+	@Benchmark
+	public int writeBuffer() throws IOException {
+		buffer.clear();
+		new NBTBufferWriter(buffer).writeTag(tag, Tag.DEFAULT_MAX_DEPTH);
+		return buffer.position();
+	}
+}
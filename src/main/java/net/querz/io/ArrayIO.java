@@ -0,0 +1,125 @@
+package net.querz.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Reads and writes big endian int and long arrays in blocks of bytes instead of one
+ * {@link DataInput#readInt()} or {@link DataOutput#writeLong(long)} call per element.
+ * The bytes are the same as those of the element-wise methods.
+ * Every thread reuses a single block buffer, so no garbage is created per array.
+ * */
+public final class ArrayIO {
+
+	// large enough for the BlockStates of a section in a single block
+	private static final int BLOCK_SIZE = 8192;
+
+	private static final ThreadLocal<Block> block = new ThreadLocal<Block>() {
+		@Override
+		protected Block initialValue() {
+			return new Block();
+		}
+	};
+
+	// a block of bytes with int and long views of its content
+	private static final class Block {
+
+		final byte[] bytes = new byte[BLOCK_SIZE];
+		final IntBuffer ints = ByteBuffer.wrap(bytes).asIntBuffer();
+		final LongBuffer longs = ByteBuffer.wrap(bytes).asLongBuffer();
+	}
+
+	private ArrayIO() {}
+
+	/**
+	 * Fills {@code a} with big endian ints read from {@code in}.
+	 * @param in The input to read from.
+	 * @param a The array to fill.
+	 * @throws IOException If {@code in} ends before {@code a} is filled.
+	 * */
+	public static void readInts(DataInput in, int[] a) throws IOException {
+		if (a.length == 0) {
+			return;
+		}
+		Block b = block.get();
+		byte[] bytes = b.bytes;
+		IntBuffer view = b.ints;
+		for (int offset = 0; offset < a.length;) {
+			int n = Math.min(a.length - offset, bytes.length / 4);
+			in.readFully(bytes, 0, n * 4);
+			view.rewind();
+			view.get(a, offset, n);
+			offset += n;
+		}
+	}
+
+	/**
+	 * Fills {@code a} with big endian longs read from {@code in}.
+	 * @param in The input to read from.
+	 * @param a The array to fill.
+	 * @throws IOException If {@code in} ends before {@code a} is filled.
+	 * */
+	public static void readLongs(DataInput in, long[] a) throws IOException {
+		if (a.length == 0) {
+			return;
+		}
+		Block b = block.get();
+		byte[] bytes = b.bytes;
+		LongBuffer view = b.longs;
+		for (int offset = 0; offset < a.length;) {
+			int n = Math.min(a.length - offset, bytes.length / 8);
+			in.readFully(bytes, 0, n * 8);
+			view.rewind();
+			view.get(a, offset, n);
+			offset += n;
+		}
+	}
+
+	/**
+	 * Writes all elements of {@code a} as big endian ints to {@code out}.
+	 * @param out The output to write to.
+	 * @param a The array to write.
+	 * @throws IOException If the array could not be written.
+	 * */
+	public static void writeInts(DataOutput out, int[] a) throws IOException {
+		if (a.length == 0) {
+			return;
+		}
+		Block b = block.get();
+		byte[] bytes = b.bytes;
+		IntBuffer view = b.ints;
+		for (int offset = 0; offset < a.length;) {
+			int n = Math.min(a.length - offset, bytes.length / 4);
+			view.rewind();
+			view.put(a, offset, n);
+			out.write(bytes, 0, n * 4);
+			offset += n;
+		}
+	}
+
+	/**
+	 * Writes all elements of {@code a} as big endian longs to {@code out}.
+	 * @param out The output to write to.
+	 * @param a The array to write.
+	 * @throws IOException If the array could not be written.
+	 * */
+	public static void writeLongs(DataOutput out, long[] a) throws IOException {
+		if (a.length == 0) {
+			return;
+		}
+		Block b = block.get();
+		byte[] bytes = b.bytes;
+		LongBuffer view = b.longs;
+		for (int offset = 0; offset < a.length;) {
+			int n = Math.min(a.length - offset, bytes.length / 8);
+			view.rewind();
+			view.put(a, offset, n);
+			out.write(bytes, 0, n * 8);
+			offset += n;
+		}
+	}
+}
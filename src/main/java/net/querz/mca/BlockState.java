@@ -0,0 +1,185 @@
+package net.querz.mca;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable block state consisting of a block name and its properties, used as a hash key for palette entries.
+ * The hash code does not depend on the order of the properties and is computed once, so looking up a block state
+ * in a palette takes a single hash probe instead of comparing {@link CompoundTag}s, without sorting the properties.
+ * Two block states are equal if their names and properties are equal, property values are compared by their tag type
+ * and value. Palette entries containing anything other than a String {@code Name} and a compound {@code Properties}
+ * are only equal if the complete {@link CompoundTag}s are equal.
+ * */
+public final class BlockState {
+
+	private static final Object[] NO_PROPERTIES = new Object[0];
+
+	private final String name;
+	// alternating property names and values in the order of the palette entry,
+	// a value is a String for a StringTag and a copy of the tag for any other tag type
+	private final Object[] properties;
+	// a copy of the complete palette entry if it is not a plain Name and Properties, null otherwise
+	private final CompoundTag entry;
+	private final int hash;
+
+	private BlockState(String name, Object[] properties, CompoundTag entry) {
+		this.name = name;
+		this.properties = properties;
+		this.entry = entry;
+		if (entry != null) {
+			hash = entry.hashCode();
+		} else {
+			int h = 0;
+			for (int i = 0; i < properties.length; i += 2) {
+				h += properties[i].hashCode() ^ properties[i + 1].hashCode();
+			}
+			hash = 31 * (name == null ? 0 : name.hashCode()) + h;
+		}
+	}
+
+	/**
+	 * Creates the block state of a palette entry.
+	 * @param paletteEntry The palette entry containing the block name as the String {@code Name}
+	 *                     and optionally the properties as the compound {@code Properties}.
+	 * @return The block state of the palette entry.
+	 * */
+	public static BlockState of(CompoundTag paletteEntry) {
+		Tag<?> rawName = paletteEntry.get("Name");
+		Tag<?> rawProperties = paletteEntry.get("Properties");
+		String name = rawName instanceof StringTag ? ((StringTag) rawName).getValue() : null;
+		Object[] properties = NO_PROPERTIES;
+		if (rawProperties instanceof CompoundTag && ((CompoundTag) rawProperties).size() > 0) {
+			properties = new Object[((CompoundTag) rawProperties).size() * 2];
+			int i = 0;
+			for (Map.Entry<String, Tag<?>> property : (CompoundTag) rawProperties) {
+				Tag<?> value = property.getValue();
+				properties[i++] = property.getKey();
+				properties[i++] = value instanceof StringTag ? ((StringTag) value).getValue() : value.clone();
+			}
+		}
+		int plainSize = (rawName instanceof StringTag ? 1 : 0) + (rawProperties instanceof CompoundTag ? 1 : 0);
+		CompoundTag entry = paletteEntry.size() == plainSize ? null : paletteEntry.unmodifiableCopy();
+		return new BlockState(name, properties, entry);
+	}
+
+	/**
+	 * @return The name of this block state, e.g. {@code minecraft:stone}.
+	 * */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param property The name of the property.
+	 * @return The value of the property or {@code null} if this block state does not have it.
+	 *         Values that are not a {@link StringTag} are returned as their SNBT value.
+	 * */
+	public String getProperty(String property) {
+		int i = indexOf(property);
+		if (i < 0) {
+			return null;
+		}
+		Object value = properties[i + 1];
+		return value instanceof String ? (String) value : ((Tag<?>) value).valueToString();
+	}
+
+	private int indexOf(String property) {
+		for (int i = 0; i < properties.length; i += 2) {
+			if (properties[i].equals(property)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The number of properties of this block state.
+	 * */
+	public int getPropertyCount() {
+		return properties.length / 2;
+	}
+
+	/**
+	 * Creates a new palette entry for this block state.
+	 * @return A new {@link CompoundTag} with the name and properties of this block state.
+	 * */
+	public CompoundTag toCompoundTag() {
+		if (entry != null) {
+			return entry.clone();
+		}
+		CompoundTag tag = new CompoundTag();
+		if (name != null) {
+			tag.putString("Name", name);
+		}
+		if (properties.length > 0) {
+			CompoundTag rawProperties = new CompoundTag();
+			for (int i = 0; i < properties.length; i += 2) {
+				Object value = properties[i + 1];
+				if (value instanceof String) {
+					rawProperties.putString((String) properties[i], (String) value);
+				} else {
+					rawProperties.put((String) properties[i], ((Tag<?>) value).clone());
+				}
+			}
+			tag.put("Properties", rawProperties);
+		}
+		return tag;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof BlockState)) {
+			return false;
+		}
+		BlockState state = (BlockState) other;
+		if (hash != state.hash) {
+			return false;
+		}
+		if (entry != null || state.entry != null) {
+			return entry != null && entry.equals(state.entry);
+		}
+		if (!(name == null ? state.name == null : name.equals(state.name)) || properties.length != state.properties.length) {
+			return false;
+		}
+		// the properties of both block states may be in a different order
+		for (int i = 0; i < properties.length; i += 2) {
+			int j = state.indexOf((String) properties[i]);
+			if (j < 0 || !properties[i + 1].equals(state.properties[j + 1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		if (properties.length == 0) {
+			return String.valueOf(name);
+		}
+		String[] keys = new String[properties.length / 2];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = (String) properties[i * 2];
+		}
+		Arrays.sort(keys);
+		StringBuilder sb = new StringBuilder(String.valueOf(name)).append('[');
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(keys[i]).append('=').append(getProperty(keys[i]));
+		}
+		return sb.append(']').toString();
+	}
+}
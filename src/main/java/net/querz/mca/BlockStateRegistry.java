@@ -0,0 +1,125 @@
+package net.querz.mca;
+
+import net.querz.nbt.tag.CompoundTag;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns block states shared by many sections. When a registry is set with
+ * {@link BlockStateRegistry#setGlobal(BlockStateRegistry)}, every {@link Section} replaces its palette
+ * entries with shared unmodifiable instances from this registry when it is created or when
+ * a new block state is added to its palette, so each distinct block state exists only once in memory.
+ * Each registered block state is assigned a compact id, starting at {@code 0} in the order of registration.
+ * The registry only grows, it is meant to be used for working sets of many regions of the same world.
+ * This class is thread safe.
+ * */
+public final class BlockStateRegistry {
+
+	private static volatile BlockStateRegistry global;
+
+	private final ConcurrentMap<BlockState, Entry> entries = new ConcurrentHashMap<>();
+	// guarded by this
+	private final List<Entry> byId = new ArrayList<>();
+
+	/**
+	 * Sets the registry used by all sections created from now on.
+	 * @param registry The registry or {@code null} to disable interning, which is the default.
+	 * */
+	public static void setGlobal(BlockStateRegistry registry) {
+		global = registry;
+	}
+
+	/**
+	 * @return The registry used by all sections or {@code null} if interning is disabled.
+	 * */
+	public static BlockStateRegistry getGlobal() {
+		return global;
+	}
+
+	/**
+	 * Returns the shared palette entry for the block state of {@code paletteEntry}, registering it if necessary.
+	 * @param paletteEntry The palette entry.
+	 * @return An unmodifiable palette entry equal to {@code paletteEntry} in its Name and Properties.
+	 * */
+	public CompoundTag canonicalize(CompoundTag paletteEntry) {
+		return register(BlockState.of(paletteEntry), paletteEntry).paletteEntry;
+	}
+
+	/**
+	 * Returns the id of the block state of {@code paletteEntry}, registering it if necessary.
+	 * @param paletteEntry The palette entry.
+	 * @return The id of the block state.
+	 * */
+	public int getId(CompoundTag paletteEntry) {
+		return register(BlockState.of(paletteEntry), paletteEntry).id;
+	}
+
+	/**
+	 * Returns the id of a block state, registering it if necessary.
+	 * @param state The block state.
+	 * @return The id of the block state.
+	 * */
+	public int getId(BlockState state) {
+		Entry entry = entries.get(state);
+		if (entry == null) {
+			entry = register(state, state.toCompoundTag());
+		}
+		return entry.id;
+	}
+
+	/**
+	 * @param id The id of a registered block state.
+	 * @return The block state with that id.
+	 * @throws IndexOutOfBoundsException If no block state has been registered with that id.
+	 * */
+	public synchronized BlockState getBlockState(int id) {
+		return byId.get(id).state;
+	}
+
+	/**
+	 * @param id The id of a registered block state.
+	 * @return The shared unmodifiable palette entry of the block state with that id.
+	 * @throws IndexOutOfBoundsException If no block state has been registered with that id.
+	 * */
+	public synchronized CompoundTag getPaletteEntry(int id) {
+		return byId.get(id).paletteEntry;
+	}
+
+	/**
+	 * @return The number of registered block states.
+	 * */
+	public int size() {
+		return entries.size();
+	}
+
+	Entry register(BlockState state, CompoundTag paletteEntry) {
+		Entry entry = entries.get(state);
+		if (entry != null) {
+			return entry;
+		}
+		synchronized (this) {
+			entry = entries.get(state);
+			if (entry == null) {
+				entry = new Entry(byId.size(), state, paletteEntry.unmodifiableCopy());
+				byId.add(entry);
+				entries.put(state, entry);
+			}
+			return entry;
+		}
+	}
+
+	static final class Entry {
+
+		final int id;
+		final BlockState state;
+		final CompoundTag paletteEntry;
+
+		Entry(int id, BlockState state, CompoundTag paletteEntry) {
+			this.id = id;
+			this.state = state;
+			this.paletteEntry = paletteEntry;
+		}
+	}
+}
@@ -1,17 +1,29 @@
 package net.querz.mca;
 
+import net.querz.io.ByteBufferInputStream;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.PathFilter;
 import net.querz.nbt.io.NamedTag;
 import net.querz.nbt.io.NBTDeserializer;
 import net.querz.nbt.io.NBTSerializer;
+import net.querz.nbt.io.NBTView;
+import net.querz.nbt.io.StringCache;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 import static net.querz.mca.LoadFlags.*;
 
 public class Chunk {
@@ -41,11 +53,34 @@ public class Chunk {
 	private ListTag<ListTag<?>> postProcessing;
 	private String status;
 	private CompoundTag structures;
+	private boolean batching;
+
+	private static final Map<Long, PathFilter> filterCache = new ConcurrentHashMap<>();
+
+	private static final ThreadLocal<ByteBuffer> readBuffer = new ThreadLocal<>();
+
+	// shared by all chunks that are read, disabled unless set with setStringCaches
+	private static volatile StringCache keyCache;
+	private static volatile StringCache valueCache;
 
 	Chunk(int lastMCAUpdate) {
 		this.lastMCAUpdate = lastMCAUpdate;
 	}
 
+	/**
+	 * Sets the caches used to deduplicate the compound keys and the values of String tags of every chunk
+	 * read afterwards, including chunks read by {@link MCAUtil}, {@link MCAFile} and {@link WorldScanner},
+	 * so that loaded chunks retain each key and block name only once.
+	 * Like in {@link NBTDeserializer}, strings are not deduplicated by default.
+	 * @param keyCache The cache for compound keys, or {@code null} to not deduplicate them.
+	 * @param valueCache The cache for the values of String tags, or {@code null} to not deduplicate them.
+	 *                   May be the same as {@code keyCache}.
+	 * */
+	public static void setStringCaches(StringCache keyCache, StringCache valueCache) {
+		Chunk.keyCache = keyCache;
+		Chunk.valueCache = valueCache;
+	}
+
 	/**
 	 * Create a new chunk based on raw base data from a region file.
 	 * @param data The raw base data to be used.
@@ -55,6 +90,19 @@ public class Chunk {
 		initReferences(ALL_DATA);
 	}
 
+	/**
+	 * Create a new chunk from a view of its uncompressed base data from a region file.
+	 * Only the data selected by {@code loadFlags} is created, everything else is skipped in place.
+	 * The chunk does not retain the view or its buffer.
+	 * @param data The view of the raw base data to be used.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @throws ClassCastException If {@code data} is not a view of a CompoundTag.
+	 */
+	public Chunk(NBTView data, long loadFlags) {
+		this.data = (CompoundTag) data.toTag(getFilter(loadFlags));
+		initReferences(loadFlags);
+	}
+
 	private void initReferences(long loadFlags) {
 		if (data == null) {
 			throw new NullPointerException("data cannot be null");
@@ -126,6 +174,57 @@ public class Chunk {
 		}
 	}
 
+	private static PathFilter getFilter(long loadFlags) {
+		if (loadFlags == ALL_DATA) {
+			return null;
+		}
+		Long key = Long.valueOf(loadFlags);
+		PathFilter filter = filterCache.get(key);
+		if (filter == null) {
+			filter = createFilter(loadFlags);
+			filterCache.put(key, filter);
+		}
+		return filter;
+	}
+
+	/**
+	 * Creates a filter that only selects the data read by {@link #initReferences(long)} for {@code loadFlags},
+	 * so that unrequested parts of the chunk are skipped instead of being created and dropped after parsing.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants.
+	 * @return The filter, or {@code null} if all data should be loaded.
+	 */
+	static PathFilter createFilter(long loadFlags) {
+		if (loadFlags == ALL_DATA) {
+			return null;
+		}
+		PathFilter filter = new PathFilter().include("DataVersion", "Level.InhabitedTime", "Level.LastUpdate", "Level.Status");
+		includeIf(filter, loadFlags, BIOMES, "Level.Biomes");
+		includeIf(filter, loadFlags, HEIGHTMAPS, "Level.Heightmaps");
+		includeIf(filter, loadFlags, CARVING_MASKS, "Level.CarvingMasks");
+		includeIf(filter, loadFlags, ENTITIES, "Level.Entities");
+		includeIf(filter, loadFlags, TILE_ENTITIES, "Level.TileEntities");
+		includeIf(filter, loadFlags, TILE_TICKS, "Level.TileTicks");
+		includeIf(filter, loadFlags, LIQUID_TICKS, "Level.LiquidTicks");
+		includeIf(filter, loadFlags, LIGHTS, "Level.Lights");
+		includeIf(filter, loadFlags, LIQUIDS_TO_BE_TICKED, "Level.LiquidsToBeTicked");
+		includeIf(filter, loadFlags, TO_BE_TICKED, "Level.ToBeTicked");
+		includeIf(filter, loadFlags, POST_PROCESSING, "Level.PostProcessing");
+		includeIf(filter, loadFlags, STRUCTURES, "Level.Structures");
+		if ((loadFlags & (BLOCK_LIGHTS|BLOCK_STATES|SKY_LIGHT)) != 0) {
+			filter.include("Level.Sections[].Y", "Level.Sections[].Palette");
+			includeIf(filter, loadFlags, BLOCK_LIGHTS, "Level.Sections[].BlockLight");
+			includeIf(filter, loadFlags, BLOCK_STATES, "Level.Sections[].BlockStates");
+			includeIf(filter, loadFlags, SKY_LIGHT, "Level.Sections[].SkyLight");
+		}
+		return filter;
+	}
+
+	private static void includeIf(PathFilter filter, long loadFlags, long flag, String path) {
+		if ((loadFlags & flag) != 0) {
+			filter.include(path);
+		}
+	}
+
 	/**
 	 * Serializes this chunk to a <code>RandomAccessFile</code>.
 	 * @param raf The RandomAccessFile to be written to.
@@ -136,14 +235,54 @@ public class Chunk {
 	 * @throws IOException When something went wrong during writing.
 	 */
 	public int serialize(RandomAccessFile raf, int xPos, int zPos) throws IOException {
+		return serialize(raf, xPos, zPos, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+	}
+
+	/**
+	 * Serializes this chunk to a <code>RandomAccessFile</code> with the given zlib compression level and strategy.
+	 * @param raf The RandomAccessFile to be written to.
+	 * @param xPos The x-coordinate of the chunk.
+	 * @param zPos The z-coodrinate of the chunk.
+	 * @param level The compression level, see {@link Deflater#setLevel(int)}.
+	 * @param strategy The compression strategy, see {@link Deflater#setStrategy(int)}.
+	 * @return The amount of bytes written to the RandomAccessFile.
+	 * @throws UnsupportedOperationException When something went wrong during writing.
+	 * @throws IllegalArgumentException If the level or the strategy is invalid.
+	 * @throws IOException When something went wrong during writing.
+	 */
+	public int serialize(RandomAccessFile raf, int xPos, int zPos, int level, int strategy) throws IOException {
+		return write(raf, compress(xPos, zPos, level, strategy));
+	}
+
+	/**
+	 * Updates the raw data of this chunk and compresses it the way it is stored in an .mca file.
+	 * @param xPos The x-coordinate of the chunk.
+	 * @param zPos The z-coodrinate of the chunk.
+	 * @param level The compression level, see {@link Deflater#setLevel(int)}.
+	 * @param strategy The compression strategy, see {@link Deflater#setStrategy(int)}.
+	 * @return The zlib compressed chunk data.
+	 * @throws UnsupportedOperationException When this chunk has only been partially loaded.
+	 * @throws IOException When something went wrong during compression.
+	 */
+	byte[] compress(int xPos, int zPos, int level, int strategy) throws IOException {
 		if (partial) {
 			throw new UnsupportedOperationException("Partially loaded chunks cannot be serialized");
 		}
 		ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
-		try (BufferedOutputStream nbtOut = new BufferedOutputStream(CompressionType.ZLIB.compress(baos))) {
+		try (BufferedOutputStream nbtOut = new BufferedOutputStream(CompressionType.ZLIB.compress(baos, level, strategy))) {
 			new NBTSerializer(false).toStream(new NamedTag(null, updateHandle(xPos, zPos)), nbtOut);
 		}
-		byte[] rawData = baos.toByteArray();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Writes data returned by {@link Chunk#compress(int, int, int, int)} to the current position of a RandomAccessFile.
+	 * @param raf The RandomAccessFile to be written to.
+	 * @param rawData The zlib compressed chunk data.
+	 * @return The amount of bytes written to the RandomAccessFile.
+	 * @throws IOException When something went wrong during writing.
+	 */
+	static int write(RandomAccessFile raf, byte[] rawData) throws IOException {
 		raf.writeInt(rawData.length + 1); // including the byte to store the compression type
 		raf.writeByte(CompressionType.ZLIB.getID());
 		raf.write(rawData);
@@ -171,8 +310,70 @@ public class Chunk {
 		if (compressionType == null) {
 			throw new IOException("invalid compression type " + compressionTypeByte);
 		}
-		BufferedInputStream dis = new BufferedInputStream(compressionType.decompress(new FileInputStream(raf.getFD())));
-		NamedTag tag = new NBTDeserializer(false).fromStream(dis);
+		// the decompressing stream must be closed to release its Inflater, but not the file it reads from
+		InputStream file = new FilterInputStream(Channels.newInputStream(raf.getChannel())) {
+			@Override
+			public void close() {}
+		};
+		try (InputStream in = new BufferedInputStream(compressionType.decompress(file))) {
+			deserialize(in, loadFlags);
+		}
+	}
+
+	/**
+	 * Reads chunk data from a ByteBuffer. The buffer must be positioned at the 4-byte length
+	 * that precedes the compression type and the compressed chunk data.
+	 * The compressed data is read directly from the buffer, it is never copied.
+	 * @param buffer The ByteBuffer to read the chunk data from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @throws IOException When something went wrong during reading.
+	 */
+	public void deserialize(ByteBuffer buffer, long loadFlags) throws IOException {
+		if (buffer.remaining() < 5) {
+			throw new EOFException("chunk data is too short: " + buffer.remaining() + " bytes");
+		}
+		int length = buffer.getInt();
+		byte compressionTypeByte = buffer.get();
+		CompressionType compressionType = CompressionType.getFromID(compressionTypeByte);
+		if (compressionType == null) {
+			throw new IOException("invalid compression type " + compressionTypeByte);
+		}
+		if (length < 1 || length - 1 > buffer.remaining()) {
+			throw new IOException("invalid chunk data length " + length);
+		}
+		ByteBuffer payload = buffer.slice();
+		payload.limit(length - 1);
+		buffer.position(buffer.position() + length - 1);
+		try (InputStream in = new BufferedInputStream(compressionType.decompress(new ByteBufferInputStream(payload)))) {
+			deserialize(in, loadFlags);
+		}
+	}
+
+	/**
+	 * Reads chunk data from a FileChannel with a single positional read of the sectors of this chunk.
+	 * The data is read into a buffer that is reused by the calling thread and inflated from there.
+	 * The position of the channel is not used or changed, so independent chunks of the same
+	 * file can be read concurrently.
+	 * @param channel The FileChannel to read the chunk data from.
+	 * @param position The file position of the 4-byte length that precedes the chunk data.
+	 * @param size The number of bytes spanned by the sectors of this chunk.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @throws IOException When something went wrong during reading.
+	 */
+	public void deserialize(FileChannel channel, long position, int size, long loadFlags) throws IOException {
+		ByteBuffer buffer = readBuffer.get();
+		if (buffer == null || buffer.capacity() < size) {
+			buffer = ByteBuffer.allocate(size);
+			readBuffer.set(buffer);
+		}
+		buffer.clear().limit(size);
+		MCAHeader.readFully(channel, buffer, position);
+		buffer.flip();
+		deserialize(buffer, loadFlags);
+	}
+
+	private void deserialize(InputStream in, long loadFlags) throws IOException {
+		NamedTag tag = new NBTDeserializer(false, getFilter(loadFlags), keyCache, valueCache).fromStream(in);
 		if (tag != null && tag.getTag() instanceof CompoundTag) {
 			data = (CompoundTag) tag.getTag();
 			initReferences(loadFlags);
@@ -302,9 +503,35 @@ public class Chunk {
 		if (section == null) {
 			section = sections[sectionIndex] = Section.newSection();
 		}
+		if (batching) {
+			section.beginBatch();
+		}
 		section.setBlockStateAt(blockX, blockY, blockZ, state, cleanup);
 	}
 
+	/**
+	 * Starts a batch of block state changes. Until {@link Chunk#commitBatch()} is called,
+	 * {@link Chunk#setBlockStateAt(int, int, int, CompoundTag, boolean)} writes into an unpacked buffer
+	 * of each touched section, see {@link Section#beginBatch()}.
+	 * Does nothing if a batch has already been started.
+	 */
+	public void beginBatch() {
+		batching = true;
+	}
+
+	/**
+	 * Ends a batch started with {@link Chunk#beginBatch()}, cleaning up and repacking every section
+	 * touched during the batch exactly once.
+	 */
+	public void commitBatch() {
+		batching = false;
+		for (Section section : sections) {
+			if (section != null) {
+				section.commitBatch();
+			}
+		}
+	}
+
 	/**
 	 * @return The DataVersion of this chunk.
 	 */
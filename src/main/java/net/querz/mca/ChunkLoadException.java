@@ -0,0 +1,13 @@
+package net.querz.mca;
+
+/**
+ * Exception indicating that a lazily loaded chunk could not be read from its region file.
+ * The cause contains the original {@code IOException}.
+ */
+@SuppressWarnings("serial")
+public class ChunkLoadException extends RuntimeException {
+
+	public ChunkLoadException(String msg, Throwable cause) {
+		super(msg, cause);
+	}
+}
@@ -3,60 +3,85 @@ package net.querz.mca;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
-import java.util.zip.InflaterInputStream;
 
+/**
+ * The compression types of chunk data in .mca files.
+ * <p>{@link #ZLIB} streams share pooled {@code Inflater} and {@code Deflater} instances.
+ * An instance is returned to the pool when the stream returned by {@link #compress(OutputStream)}
+ * or {@link #decompress(InputStream)} is closed, so these streams should always be closed.</p>
+ * */
 public enum CompressionType {
 
-	NONE(0, new ExceptionFunction<OutputStream, OutputStream, IOException>() {
-			public OutputStream accept(OutputStream s) { return s; }
-		}, new ExceptionFunction<InputStream, InputStream, IOException>() {
-			public InputStream accept(InputStream s) { return s; }
-		}),
-	GZIP(1, new ExceptionFunction<OutputStream, GZIPOutputStream, IOException>() {
-			public GZIPOutputStream accept(OutputStream s) throws IOException {
-				return new GZIPOutputStream(s);
-			}
-		}, new ExceptionFunction<InputStream, GZIPInputStream, IOException>() {
-			public GZIPInputStream accept(InputStream s) throws IOException {
-				return new GZIPInputStream(s);
-			}
-		}),
-	ZLIB(2, new ExceptionFunction<OutputStream, DeflaterOutputStream, IOException>() {
-			public DeflaterOutputStream accept(OutputStream s) throws IOException {
-				return new DeflaterOutputStream(s);
-			}
-		}, new ExceptionFunction<InputStream, InflaterInputStream, IOException>() {
-			public InflaterInputStream accept(InputStream s) throws IOException {
-				return new InflaterInputStream(s);
-			}
-		});
+	NONE(0) {
+		@Override
+		public OutputStream compress(OutputStream out, int level, int strategy) {
+			return out;
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) {
+			return in;
+		}
+	},
+	GZIP(1) {
+		@Override
+		public OutputStream compress(OutputStream out, int level, int strategy) throws IOException {
+			return new ConfigurableGZIPOutputStream(out, level, strategy);
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) throws IOException {
+			return new GZIPInputStream(in);
+		}
+	},
+	ZLIB(2) {
+		@Override
+		public OutputStream compress(OutputStream out, int level, int strategy) {
+			return ZlibPool.deflate(out, level, strategy);
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) {
+			return ZlibPool.inflate(in);
+		}
+	};
 
 	private byte id;
-	private ExceptionFunction<OutputStream, ? extends OutputStream, IOException> compressor;
-	private ExceptionFunction<InputStream, ? extends InputStream, IOException> decompressor;
 
-	CompressionType(int id,
-					ExceptionFunction<OutputStream, ? extends OutputStream, IOException> compressor,
-					ExceptionFunction<InputStream, ? extends InputStream, IOException> decompressor) {
+	CompressionType(int id) {
 		this.id = (byte) id;
-		this.compressor = compressor;
-		this.decompressor = decompressor;
 	}
 
 	public byte getID() {
 		return id;
 	}
 
+	/**
+	 * Calls {@link CompressionType#compress(OutputStream, int, int)} with the default
+	 * compression level and strategy of {@code Deflater}.
+	 * @param out The stream to write compressed data to.
+	 * @return The compressing stream.
+	 * @throws IOException If the stream could not be created.
+	 * */
 	public OutputStream compress(OutputStream out) throws IOException {
-		return compressor.accept(out);
+		return compress(out, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
 	}
 
-	public InputStream decompress(InputStream in) throws IOException {
-		return decompressor.accept(in);
-	}
+	/**
+	 * Creates a stream compressing data to {@code out}. {@link #NONE} ignores the level and the strategy.
+	 * @param out The stream to write compressed data to.
+	 * @param level The compression level, see {@link Deflater#setLevel(int)}.
+	 * @param strategy The compression strategy, see {@link Deflater#setStrategy(int)}.
+	 * @return The compressing stream.
+	 * @throws IOException If the stream could not be created.
+	 * @throws IllegalArgumentException If the level or the strategy is invalid.
+	 * */
+	public abstract OutputStream compress(OutputStream out, int level, int strategy) throws IOException;
+
+	public abstract InputStream decompress(InputStream in) throws IOException;
 
 	public static CompressionType getFromID(byte id) {
 		for (CompressionType c : CompressionType.values()) {
@@ -66,4 +91,13 @@ public enum CompressionType {
 		}
 		return null;
 	}
+
+	private static class ConfigurableGZIPOutputStream extends GZIPOutputStream {
+
+		ConfigurableGZIPOutputStream(OutputStream out, int level, int strategy) throws IOException {
+			super(out);
+			def.setLevel(level);
+			def.setStrategy(strategy);
+		}
+	}
 }
@@ -1,5 +1,10 @@
 package net.querz.mca;
 
+/**
+ * @deprecated No longer used by {@link CompressionType}, which overrides its methods per constant instead.
+ * Will be removed in a future version.
+ * */
+@Deprecated
 //@FunctionalInterface
 public interface ExceptionFunction<T, R, E extends Exception> {
 
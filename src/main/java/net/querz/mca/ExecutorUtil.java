@@ -0,0 +1,126 @@
+package net.querz.mca;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs groups of independent tasks on an {@code Executor}.
+ * */
+final class ExecutorUtil {
+
+	private ExecutorUtil() {}
+
+	/**
+	 * Submits all tasks to {@code executor} and blocks until every task has finished.
+	 * After the first failure, tasks that have not started yet are skipped.
+	 * If this is called from a worker thread of {@code executor} and {@code executor} is a {@code ForkJoinPool},
+	 * the tasks are forked and joined, so the calling worker runs queued tasks itself instead of blocking.
+	 * A worker of any other {@code ForkJoinPool} waits through {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}
+	 * so that its pool can compensate. Calling this from a worker thread of a bounded executor that is not
+	 * a {@code ForkJoinPool}, with that same executor, is not supported and may deadlock once all its threads wait.
+	 * @param executor The executor to run the tasks on.
+	 * @param tasks The tasks to run.
+	 * @throws IOException The first {@code IOException} thrown by a task, or an {@code InterruptedIOException}
+	 *                     if the calling thread was interrupted while waiting.
+	 * @throws RuntimeException The first {@code RuntimeException} thrown by a task or by the executor.
+	 * */
+	static void invokeAll(Executor executor, List<? extends Callable<?>> tasks) throws IOException {
+		final CountDownLatch latch = new CountDownLatch(tasks.size());
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Runnable> runnables = new ArrayList<>(tasks.size());
+		for (final Callable<?> task : tasks) {
+			runnables.add(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (failure.get() == null) {
+							task.call();
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+
+		if (isWorkerOf(executor)) {
+			List<ForkJoinTask<?>> forked = new ArrayList<>(runnables.size());
+			for (Runnable runnable : runnables) {
+				forked.add(ForkJoinTask.adapt(runnable).fork());
+			}
+			// joining in reverse order lets the worker pop its own most recently forked tasks first
+			for (int i = forked.size() - 1; i >= 0; i--) {
+				forked.get(i).join();
+			}
+		} else {
+			int submitted = 0;
+			try {
+				for (Runnable runnable : runnables) {
+					executor.execute(runnable);
+					submitted++;
+				}
+			} catch (RejectedExecutionException ex) {
+				failure.compareAndSet(null, ex);
+				for (int i = submitted; i < tasks.size(); i++) {
+					latch.countDown();
+				}
+			}
+			await(latch);
+		}
+
+		Throwable t = failure.get();
+		if (t == null) {
+			return;
+		} else if (t instanceof IOException) {
+			throw (IOException) t;
+		} else if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		}
+		throw new IOException(t);
+	}
+
+	private static boolean isWorkerOf(Executor executor) {
+		Thread current = Thread.currentThread();
+		return executor instanceof ForkJoinPool
+				&& current instanceof ForkJoinWorkerThread
+				&& ((ForkJoinWorkerThread) current).getPool() == executor;
+	}
+
+	// blocks through the ForkJoinPool so that a waiting pool worker is compensated,
+	// outside of a ForkJoinPool this is the same as latch.await()
+	private static void await(final CountDownLatch latch) throws InterruptedIOException {
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() throws InterruptedException {
+					latch.await();
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return latch.getCount() == 0;
+				}
+			});
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException iex = new InterruptedIOException("interrupted while waiting for tasks to finish");
+			iex.initCause(ex);
+			throw iex;
+		}
+	}
+}
@@ -3,6 +3,15 @@ package net.querz.mca;
 import net.querz.nbt.tag.CompoundTag;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
 
 public class MCAFile {
 
@@ -14,6 +23,17 @@ public class MCAFile {
 	private int regionX, regionZ;
 	private Chunk[] chunks;
 
+	// source of lazily loaded chunks, null if all chunks have been loaded eagerly
+	private ByteBuffer region;
+	private MCAHeader header;
+	private long loadFlags;
+	private Map<Integer, Chunk> chunkCache;
+	// guards chunks, header and chunkCache while chunks are loaded lazily
+	private final Object lazyLock = new Object();
+	private boolean batching;
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	private int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+
 	/**
 	 * MCAFile represents a world save file used by Minecraft to store world
 	 * data on the hard drive.
@@ -39,30 +59,281 @@ public class MCAFile {
 
 	/**
 	 * Reads an .mca file from a {@code RandomAccessFile} into this object.
+	 * Every chunk is read with a single positional read of its sectors as listed in the header,
+	 * the file pointer of {@code raf} is not used or changed.
 	 * This method does not perform any cleanups on the data.
 	 * @param raf The {@code RandomAccessFile} to read from.
 	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
 	 * @throws IOException If something went wrong during deserialization.
 	 * */
 	public void deserialize(RandomAccessFile raf, long loadFlags) throws IOException {
+		FileChannel channel = raf.getChannel();
+		MCAHeader header = MCAHeader.read(channel);
+		clearLazyState();
 		chunks = new Chunk[1024];
 		for (int i = 0; i < 1024; i++) {
-			raf.seek(i * 4);
-			int offset = raf.read() << 16;
-			offset |= (raf.read() & 0xFF) << 8;
-			offset |= raf.read() & 0xFF;
-			if (raf.readByte() == 0) {
+			if (!header.hasChunk(i)) {
 				continue;
 			}
-			raf.seek(4096 + i * 4);
-			int timestamp = raf.readInt();
-			Chunk chunk = new Chunk(timestamp);
-			raf.seek(4096 * offset + 4); //+4: skip data size
-			chunk.deserialize(raf, loadFlags);
+			Chunk chunk = new Chunk(header.timestamps[i]);
+			chunk.deserialize(channel, header.position(i), header.size(i), loadFlags);
 			chunks[i] = chunk;
 		}
 	}
 
+	/**
+	 * Maps an .mca file into memory and reads it into this object.
+	 * The mapping is not bound to the channel and stays valid after the channel is closed.
+	 * This method does not perform any cleanups on the data.
+	 * @param channel The {@code FileChannel} to read from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @throws IOException If something went wrong during deserialization.
+	 * */
+	public void deserialize(FileChannel channel, long loadFlags) throws IOException {
+		deserialize(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), loadFlags);
+	}
+
+	/**
+	 * Reads an .mca file from a {@code ByteBuffer} into this object.
+	 * The header is decoded in one pass and the chunk data is read directly
+	 * from the buffer without copying it.
+	 * This method does not perform any cleanups on the data.
+	 * @param region The buffer containing the complete .mca file, starting at index 0.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @throws IOException If something went wrong during deserialization.
+	 * */
+	public void deserialize(ByteBuffer region, long loadFlags) throws IOException {
+		MCAHeader header = MCAHeader.read(region);
+		clearLazyState();
+		chunks = new Chunk[1024];
+		for (int i = 0; i < 1024; i++) {
+			if (!header.hasChunk(i)) {
+				continue;
+			}
+			Chunk chunk = new Chunk(header.timestamps[i]);
+			chunk.deserialize(header.slice(region, i), loadFlags);
+			chunks[i] = chunk;
+		}
+	}
+
+	/**
+	 * Reads an .mca file from a {@code RandomAccessFile} into this object,
+	 * reading, decompressing and parsing the chunks on {@code executor}.
+	 * Every task reads its chunk with a positional read, so the chunks are read concurrently
+	 * from the same file.
+	 * @see MCAFile#deserialize(ByteBuffer, long, Executor)
+	 * @param raf The {@code RandomAccessFile} to read from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param executor The executor to run the chunk deserialization on.
+	 * @throws IOException If something went wrong during deserialization.
+	 * */
+	public void deserialize(RandomAccessFile raf, final long loadFlags, Executor executor) throws IOException {
+		final FileChannel channel = raf.getChannel();
+		MCAHeader header = MCAHeader.read(channel);
+		Chunk[] chunks = new Chunk[1024];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < 1024; i++) {
+			if (!header.hasChunk(i)) {
+				continue;
+			}
+			final Chunk chunk = new Chunk(header.timestamps[i]);
+			final long position = header.position(i);
+			final int size = header.size(i);
+			chunks[i] = chunk;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					chunk.deserialize(channel, position, size, loadFlags);
+					return null;
+				}
+			});
+		}
+		ExecutorUtil.invokeAll(executor, tasks);
+		clearLazyState();
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Maps an .mca file into memory and reads it into this object,
+	 * decompressing and parsing the chunks on {@code executor}.
+	 * @see MCAFile#deserialize(ByteBuffer, long, Executor)
+	 * @param channel The {@code FileChannel} to read from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param executor The executor to run the chunk deserialization on.
+	 * @throws IOException If something went wrong during deserialization.
+	 * */
+	public void deserialize(FileChannel channel, long loadFlags, Executor executor) throws IOException {
+		deserialize(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), loadFlags, executor);
+	}
+
+	/**
+	 * Reads an .mca file from a {@code ByteBuffer} into this object.
+	 * The header and the location of each chunk are read on the calling thread,
+	 * decompression and parsing of every chunk is submitted to {@code executor} as a separate task.
+	 * This method blocks until all chunks have been read and produces the same result as
+	 * {@link MCAFile#deserialize(ByteBuffer, long)}. If any chunk fails to load,
+	 * this object is left unchanged and the first exception is rethrown.
+	 * This method does not perform any cleanups on the data.
+	 * @param region The buffer containing the complete .mca file, starting at index 0.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param executor The executor to run the chunk deserialization on, e.g. a {@code ForkJoinPool}.
+	 * @throws IOException If something went wrong during deserialization.
+	 * */
+	public void deserialize(ByteBuffer region, final long loadFlags, Executor executor) throws IOException {
+		MCAHeader header = MCAHeader.read(region);
+		Chunk[] chunks = new Chunk[1024];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < 1024; i++) {
+			if (!header.hasChunk(i)) {
+				continue;
+			}
+			final Chunk chunk = new Chunk(header.timestamps[i]);
+			final ByteBuffer data = header.slice(region, i);
+			chunks[i] = chunk;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					chunk.deserialize(data, loadFlags);
+					return null;
+				}
+			});
+		}
+		ExecutorUtil.invokeAll(executor, tasks);
+		clearLazyState();
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Maps an .mca file into memory and reads only its header into this object.
+	 * @see MCAFile#deserializeLazily(ByteBuffer, long, int)
+	 * @param channel The {@code FileChannel} to read from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param cacheSize The maximum number of lazily loaded chunks to keep in memory,
+	 *                  or {@code 0} to keep all of them.
+	 * @throws IOException If the header could not be read.
+	 * */
+	public void deserializeLazily(FileChannel channel, long loadFlags, int cacheSize) throws IOException {
+		deserializeLazily(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), loadFlags, cacheSize);
+	}
+
+	/**
+	 * Reads only the header of an .mca file into this object. A chunk is decompressed and parsed
+	 * the first time it is accessed by {@link MCAFile#getChunk(int)} or any method using it,
+	 * e.g. {@link MCAFile#getBlockStateAt(int, int, int)} or {@link MCAFile#getBiomeAt(int, int, int)}.
+	 * If an I/O error occurs while loading a chunk, a {@link ChunkLoadException} is thrown.<br>
+	 * With a positive {@code cacheSize} only the most recently used chunks are kept in memory.
+	 * Evicted chunks are loaded again from {@code region} on their next access, so changes to
+	 * them are lost unless the chunk has been passed to {@link MCAFile#setChunk(int, Chunk)}
+	 * or was modified through one of the setters of this MCAFile, which keeps the chunk permanently.<br>
+	 * Chunks may be loaded from multiple threads at the same time, e.g. by concurrent calls to
+	 * {@link MCAFile#getChunk(int)}, {@link MCAFile#getBlockStateAt(int, int, int)} or {@link MCAFile#getBiomeAt(int, int, int)},
+	 * with every thread receiving the same instance of a chunk while it is cached.
+	 * Modifying this MCAFile or its chunks still requires external synchronization.
+	 * @param region The buffer containing the complete .mca file, starting at index 0.
+	 *               It must not be modified while this MCAFile is in use.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param cacheSize The maximum number of lazily loaded chunks to keep in memory,
+	 *                  or {@code 0} to keep all of them.
+	 * @throws IOException If the header could not be read.
+	 * */
+	public void deserializeLazily(ByteBuffer region, long loadFlags, final int cacheSize) throws IOException {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("negative cache size is not allowed");
+		}
+		header = MCAHeader.read(region);
+		this.region = region;
+		this.loadFlags = loadFlags;
+		chunks = new Chunk[1024];
+		if (cacheSize > 0) {
+			chunkCache = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, Chunk> eldest) {
+					return size() > cacheSize;
+				}
+			};
+		} else {
+			chunkCache = null;
+		}
+	}
+
+	private void clearLazyState() {
+		region = null;
+		header = null;
+		chunkCache = null;
+	}
+
+	// the chunk is parsed outside of the lock, so threads loading different chunks do not wait for each other
+	private Chunk loadChunk(int index) {
+		Chunk chunk;
+		synchronized (lazyLock) {
+			chunk = findLoadedChunk(index);
+			if (chunk != null || !header.hasChunk(index)) {
+				return chunk;
+			}
+		}
+		try {
+			chunk = readChunk(index);
+		} catch (IOException ex) {
+			throw new ChunkLoadException("failed to load chunk " + index, ex);
+		}
+		synchronized (lazyLock) {
+			// another thread may have loaded the same chunk in the meantime
+			Chunk loaded = findLoadedChunk(index);
+			if (loaded != null || !header.hasChunk(index)) {
+				return loaded;
+			}
+			if (chunkCache != null) {
+				chunkCache.put(index, chunk);
+			} else {
+				chunks[index] = chunk;
+			}
+		}
+		return chunk;
+	}
+
+	// must be called while holding lazyLock
+	private Chunk findLoadedChunk(int index) {
+		Chunk chunk = chunks[index];
+		if (chunk == null && chunkCache != null) {
+			chunk = chunkCache.get(index);
+		}
+		return chunk;
+	}
+
+	// reads a chunk of a lazily loaded file without touching the cache, so it may be called from any thread
+	private Chunk readChunk(int index) throws IOException {
+		Chunk chunk = new Chunk(header.timestamps[index]);
+		chunk.deserialize(header.slice(region, index), loadFlags);
+		return chunk;
+	}
+
+	/**
+	 * Sets the zlib compression level and strategy used for the chunks when this file is serialized,
+	 * e.g. {@link Deflater#BEST_SPEED} for world rewrites that favour throughput over file size.
+	 * The defaults are {@link Deflater#DEFAULT_COMPRESSION} and {@link Deflater#DEFAULT_STRATEGY}.
+	 * @param level The compression level, see {@link Deflater#setLevel(int)}.
+	 * @param strategy The compression strategy, see {@link Deflater#setStrategy(int)}.
+	 * @throws IllegalArgumentException If the level or the strategy is invalid.
+	 * */
+	public void setCompression(int level, int strategy) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level " + level);
+		}
+		if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+			throw new IllegalArgumentException("invalid compression strategy " + strategy);
+		}
+		compressionLevel = level;
+		compressionStrategy = strategy;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	public int getCompressionStrategy() {
+		return compressionStrategy;
+	}
+
 	/**
 	 * Calls {@link MCAFile#serialize(RandomAccessFile, boolean)} without updating any timestamps.
 	 * @see MCAFile#serialize(RandomAccessFile, boolean)
@@ -76,6 +347,7 @@ public class MCAFile {
 
 	/**
 	 * Serializes this object to an .mca file.
+	 * The chunks are compressed with the level and strategy set by {@link MCAFile#setCompression(int, int)}.
 	 * This method does not perform any cleanups on the data.
 	 * @param raf The {@code RandomAccessFile} to write to.
 	 * @param changeLastUpdate Whether it should update all timestamps that show
@@ -84,6 +356,73 @@ public class MCAFile {
 	 * @throws IOException If something went wrong during serialization.
 	 * */
 	public int serialize(RandomAccessFile raf, boolean changeLastUpdate) throws IOException {
+		return serialize(raf, changeLastUpdate, null, null);
+	}
+
+	/**
+	 * Serializes this object to an .mca file, compressing the chunks on {@code executor}.
+	 * Sectors and the location and timestamp tables are laid out on the calling thread in the same order
+	 * as {@link MCAFile#serialize(RandomAccessFile, boolean)}, so both methods produce identical files.
+	 * This method does not perform any cleanups on the data.
+	 * @param raf The {@code RandomAccessFile} to write to.
+	 * @param changeLastUpdate Whether it should update all timestamps that show
+	 *                         when this file was last updated.
+	 * @param executor The executor to compress the chunks on, e.g. a {@code ForkJoinPool}.
+	 * @return The amount of chunks written to the file.
+	 * @throws IOException If something went wrong during serialization.
+	 * */
+	public int serialize(RandomAccessFile raf, boolean changeLastUpdate, Executor executor) throws IOException {
+		if (chunks == null) {
+			return 0;
+		}
+		final int chunkXOffset = MCAUtil.regionToChunk(regionX);
+		final int chunkZOffset = MCAUtil.regionToChunk(regionZ);
+		final int level = compressionLevel;
+		final int strategy = compressionStrategy;
+		final Chunk[] loaded = new Chunk[1024];
+		final byte[][] compressed = new byte[1024][];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < 1024; i++) {
+			final int index = i;
+			Chunk chunk;
+			synchronized (lazyLock) {
+				chunk = header != null ? findLoadedChunk(i) : chunks[i];
+			}
+			if (chunk != null) {
+				loaded[i] = chunk;
+			} else if (header == null || !header.hasChunk(i)) {
+				continue;
+			}
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					// chunks of a lazily loaded file that are not in memory are parsed here instead of on the calling thread
+					Chunk chunk = loaded[index];
+					if (chunk == null) {
+						chunk = loaded[index] = readChunk(index);
+					}
+					compressed[index] = chunk.compress(chunkXOffset + (index & 0x1F), chunkZOffset + (index >> 5), level, strategy);
+					return null;
+				}
+			});
+		}
+		ExecutorUtil.invokeAll(executor, tasks);
+		if (header != null && chunkCache == null) {
+			// keep the chunks like getChunk(int) does without a cache
+			synchronized (lazyLock) {
+				for (int i = 0; i < 1024; i++) {
+					if (chunks[i] == null) {
+						chunks[i] = loaded[i];
+					}
+				}
+			}
+		}
+		return serialize(raf, changeLastUpdate, loaded, compressed);
+	}
+
+	// lays out the sectors and tables. Without precompressed chunks, every chunk is read through getChunk(int)
+	// and serialized one at a time, otherwise loaded holds the chunks that have been compressed.
+	private int serialize(RandomAccessFile raf, boolean changeLastUpdate, Chunk[] loaded, byte[][] compressed) throws IOException {
 		int globalOffset = 2;
 		int lastWritten = 0;
 		int timestamp = (int) (System.currentTimeMillis() / 1000L);
@@ -98,12 +437,16 @@ public class MCAFile {
 		for (int cx = 0; cx < 32; cx++) {
 			for (int cz = 0; cz < 32; cz++) {
 				int index = getChunkIndex(cx, cz);
-				Chunk chunk = chunks[index];
+				Chunk chunk = loaded == null ? getChunk(index) : loaded[index];
 				if (chunk == null) {
 					continue;
 				}
 				raf.seek(4096 * globalOffset);
-				lastWritten = chunk.serialize(raf, chunkXOffset + cx, chunkZOffset + cz);
+				if (compressed == null) {
+					lastWritten = chunk.serialize(raf, chunkXOffset + cx, chunkZOffset + cz, compressionLevel, compressionStrategy);
+				} else {
+					lastWritten = Chunk.write(raf, compressed[index]);
+				}
 
 				if (lastWritten == 0) {
 					continue;
@@ -146,7 +489,18 @@ public class MCAFile {
 		if (chunks == null) {
 			chunks = new Chunk[1024];
 		}
-		chunks[index] = chunk;
+		if (header == null) {
+			chunks[index] = chunk;
+			return;
+		}
+		synchronized (lazyLock) {
+			chunks[index] = chunk;
+			// the chunk stored in the file is superseded and must never be loaded again
+			header.sectors[index] = 0;
+			if (chunkCache != null) {
+				chunkCache.remove(index);
+			}
+		}
 	}
 
 	/**
@@ -162,14 +516,19 @@ public class MCAFile {
 
 	/**
 	 * Returns the chunk data of a chunk at a specific index in this file.
+	 * If this file has been read lazily, the chunk is loaded on its first access.
 	 * @param index The index of the chunk in this file.
 	 * @return The chunk data.
+	 * @throws ChunkLoadException If the chunk had to be loaded lazily and an I/O error occurred.
 	 * */
 	public Chunk getChunk(int index) {
 		checkIndex(index);
 		if (chunks == null) {
 			return null;
 		}
+		if (header != null) {
+			return loadChunk(index);
+		}
 		return chunks[index];
 	}
 
@@ -207,6 +566,12 @@ public class MCAFile {
 		if (chunk == null) {
 			chunk = Chunk.newChunk();
 			setChunk(getChunkIndex(chunkX, chunkZ), chunk);
+		} else if (chunkCache != null) {
+			// keep lazily loaded chunks that are about to be modified
+			setChunk(getChunkIndex(chunkX, chunkZ), chunk);
+		}
+		if (batching) {
+			chunk.beginBatch();
 		}
 		return chunk;
 	}
@@ -265,6 +630,33 @@ public class MCAFile {
 		createChunkIfMissing(blockX, blockZ).setBlockStateAt(blockX, blockY, blockZ, state, cleanup);
 	}
 
+	/**
+	 * Starts a batch of block state changes. Until {@link MCAFile#commitBatch()} is called,
+	 * {@link MCAFile#setBlockStateAt(int, int, int, CompoundTag, boolean)} writes into an unpacked buffer
+	 * of each touched section, see {@link Chunk#beginBatch()}.
+	 * Does nothing if a batch has already been started.
+	 */
+	public void beginBatch() {
+		batching = true;
+	}
+
+	/**
+	 * Ends a batch started with {@link MCAFile#beginBatch()}, cleaning up and repacking every section
+	 * touched during the batch exactly once.
+	 */
+	public void commitBatch() {
+		batching = false;
+		if (chunks == null) {
+			return;
+		}
+		// chunks modified during the batch are always kept in chunks, even if this file was read lazily
+		for (Chunk chunk : chunks) {
+			if (chunk != null) {
+				chunk.commitBatch();
+			}
+		}
+	}
+
 	/**
 	 * Fetches a block state at a specific block location.
 	 * The block coordinates can be absolute coordinates or they can be relative to the region.
@@ -286,10 +678,18 @@ public class MCAFile {
 	 * Recalculates the Palette and the BlockStates of all chunks and sections of this region.
 	 */
 	public void cleanupPalettesAndBlockStates() {
+		if (chunks == null) {
+			return;
+		}
 		for (Chunk chunk : chunks) {
 			if (chunk != null) {
 				chunk.cleanupPalettesAndBlockStates();
 			}
 		}
+		if (chunkCache != null) {
+			for (Chunk chunk : chunkCache.values()) {
+				chunk.cleanupPalettesAndBlockStates();
+			}
+		}
 	}
 }
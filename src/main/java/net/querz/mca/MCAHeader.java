@@ -0,0 +1,128 @@
+package net.querz.mca;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The location and timestamp tables stored in the first two sectors of an .mca file.
+ * Both tables are decoded in one bulk pass into primitive arrays indexed by
+ * {@link MCAFile#getChunkIndex(int, int)}.
+ * */
+final class MCAHeader {
+
+	static final int SECTOR_SIZE = 4096;
+	static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+
+	final int[] offsets = new int[1024];
+	final int[] sectors = new int[1024];
+	final int[] timestamps = new int[1024];
+
+	private MCAHeader() {}
+
+	/**
+	 * Decodes the header of an .mca file starting at index 0 of {@code buffer}, the same origin
+	 * {@link MCAHeader#slice(ByteBuffer, int)} uses for the chunk sectors.
+	 * The position of {@code buffer} is not used or changed.
+	 * @param buffer The buffer containing at least the first 8 KiB of the .mca file, starting at index 0.
+	 * @return The decoded header.
+	 * @throws EOFException If the buffer is too small to contain a header.
+	 * */
+	static MCAHeader read(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER_SIZE) {
+			throw new EOFException("region file is too small to contain a header: " + buffer.limit() + " bytes");
+		}
+		ByteBuffer start = buffer.duplicate();
+		start.position(0);
+		IntBuffer ints = start.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		MCAHeader header = new MCAHeader();
+		ints.get(header.offsets);
+		ints.get(header.timestamps);
+		for (int i = 0; i < 1024; i++) {
+			int location = header.offsets[i];
+			header.offsets[i] = location >>> 8;
+			header.sectors[i] = location & 0xFF;
+		}
+		return header;
+	}
+
+	/**
+	 * Reads the header of an .mca file with a positional read at the start of {@code channel}.
+	 * The position of {@code channel} is not used or changed.
+	 * @param channel The channel of the .mca file.
+	 * @return The decoded header.
+	 * @throws EOFException If the file is too small to contain a header.
+	 * */
+	static MCAHeader read(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, buffer, 0);
+		buffer.flip();
+		return read(buffer);
+	}
+
+	/**
+	 * Reads bytes from {@code channel} starting at {@code position} until {@code buffer} is full
+	 * or the end of the file is reached. The position of {@code channel} is not used or changed,
+	 * so this may be called concurrently for the same channel.
+	 * @param channel The channel to read from.
+	 * @param buffer The buffer to read into.
+	 * @param position The file position to start reading at.
+	 * @throws IOException If an I/O error occurs.
+	 * */
+	static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				return;
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * @param index The index of the chunk.
+	 * @return The file position of the sectors of this chunk.
+	 * */
+	long position(int index) {
+		return (long) offsets[index] * SECTOR_SIZE;
+	}
+
+	/**
+	 * @param index The index of the chunk.
+	 * @return The number of bytes spanned by the sectors of this chunk.
+	 * */
+	int size(int index) {
+		return sectors[index] * SECTOR_SIZE;
+	}
+
+	/**
+	 * @param index The index of the chunk.
+	 * @return {@code true} if the location table contains an entry for this chunk.
+	 * */
+	boolean hasChunk(int index) {
+		return sectors[index] != 0;
+	}
+
+	/**
+	 * Creates a view of the sectors of a chunk without copying any data.
+	 * The returned buffer starts at the 4-byte length of the chunk data.
+	 * @param region The buffer containing the complete .mca file.
+	 * @param index The index of the chunk.
+	 * @return A big endian buffer spanning the sectors of this chunk.
+	 * @throws EOFException If the sectors of this chunk start after the end of {@code region}.
+	 * */
+	ByteBuffer slice(ByteBuffer region, int index) throws IOException {
+		long start = position(index);
+		if (start + 5 > region.limit()) {
+			throw new EOFException("chunk " + index + " starts outside of region file at sector " + offsets[index]);
+		}
+		int end = (int) Math.min(start + size(index), region.limit());
+		ByteBuffer slice = region.duplicate();
+		slice.limit(end);
+		slice.position((int) start);
+		return slice.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+}
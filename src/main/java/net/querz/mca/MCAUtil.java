@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -62,6 +63,85 @@ public final class MCAUtil {
 		}
 	}
 
+	/**
+	 * @see MCAUtil#read(File, long, Executor)
+	 * @param file The file to read the data from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param executor The executor to decompress and parse the chunks on.
+	 * @return An in-memory representation of the MCA file with decompressed chunk data.
+	 * @throws IOException if something during deserialization goes wrong.
+	 * */
+	public static MCAFile read(String file, long loadFlags, Executor executor) throws IOException {
+		return read(new File(file), loadFlags, executor);
+	}
+
+	/**
+	 * Reads an MCA file and loads all of its chunks, decompressing and parsing them in parallel.
+	 * @see MCAFile#deserialize(java.nio.ByteBuffer, long, Executor)
+	 * @param file The file to read the data from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param executor The executor to decompress and parse the chunks on.
+	 * @return An in-memory representation of the MCA file with decompressed chunk data.
+	 * @throws IOException if something during deserialization goes wrong.
+	 * */
+	public static MCAFile read(File file, long loadFlags, Executor executor) throws IOException {
+		MCAFile mcaFile = newMCAFile(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			mcaFile.deserialize(raf, loadFlags, executor);
+			return mcaFile;
+		}
+	}
+
+	/**
+	 * @see MCAUtil#readLazily(File, long, int)
+	 * @param file The file to read the data from.
+	 * @return An in-memory representation of the MCA file that loads its chunks on demand.
+	 * @throws IOException if the header of the file could not be read.
+	 * */
+	public static MCAFile readLazily(String file) throws IOException {
+		return readLazily(new File(file), LoadFlags.ALL_DATA, 0);
+	}
+
+	/**
+	 * @see MCAUtil#readLazily(File, long, int)
+	 * @param file The file to read the data from.
+	 * @return An in-memory representation of the MCA file that loads its chunks on demand.
+	 * @throws IOException if the header of the file could not be read.
+	 * */
+	public static MCAFile readLazily(File file) throws IOException {
+		return readLazily(file, LoadFlags.ALL_DATA, 0);
+	}
+
+	/**
+	 * @see MCAUtil#readLazily(File, long, int)
+	 * @param file The file to read the data from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param cacheSize The maximum number of loaded chunks to keep in memory, or {@code 0} to keep all of them.
+	 * @return An in-memory representation of the MCA file that loads its chunks on demand.
+	 * @throws IOException if the header of the file could not be read.
+	 * */
+	public static MCAFile readLazily(String file, long loadFlags, int cacheSize) throws IOException {
+		return readLazily(new File(file), loadFlags, cacheSize);
+	}
+
+	/**
+	 * Reads the header of an MCA file. Each chunk is only decompressed and parsed
+	 * when it is accessed for the first time.
+	 * @see MCAFile#deserializeLazily(java.nio.ByteBuffer, long, int)
+	 * @param file The file to read the data from.
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param cacheSize The maximum number of loaded chunks to keep in memory, or {@code 0} to keep all of them.
+	 * @return An in-memory representation of the MCA file that loads its chunks on demand.
+	 * @throws IOException if the header of the file could not be read.
+	 * */
+	public static MCAFile readLazily(File file, long loadFlags, int cacheSize) throws IOException {
+		MCAFile mcaFile = newMCAFile(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			mcaFile.deserializeLazily(raf.getChannel(), loadFlags, cacheSize);
+			return mcaFile;
+		}
+	}
+
 	/**
 	 * Calls {@link MCAUtil#write(MCAFile, File, boolean)} without changing the timestamps.
 	 * @see MCAUtil#write(MCAFile, File, boolean)
@@ -103,6 +183,7 @@ public final class MCAUtil {
 	 * when the file was last saved to the current date and time or leaves them at
 	 * the value set by either loading an already existing MCA file or setting them manually.<br>
 	 * If the file already exists, it is completely overwritten by the new file (no modification).
+	 * The chunks are compressed with the level and strategy set by {@link MCAFile#setCompression(int, int)}.
 	 * @param file The file to write to.
 	 * @param mcaFile The data of the MCA file to write.
 	 * @param changeLastUpdate Whether to adjust the timestamps of when the file was saved.
@@ -110,13 +191,32 @@ public final class MCAUtil {
 	 * @throws IOException If something goes wrong during serialization.
 	 * */
 	public static int write(MCAFile mcaFile, File file, boolean changeLastUpdate) throws IOException {
+		return write(mcaFile, file, changeLastUpdate, null);
+	}
+
+	/**
+	 * Writes an {@code MCAFile} object to disk like {@link MCAUtil#write(MCAFile, File, boolean)},
+	 * but compresses the chunks in parallel. The written file is identical to the one written serially.
+	 * @see MCAFile#serialize(RandomAccessFile, boolean, Executor)
+	 * @param file The file to write to.
+	 * @param mcaFile The data of the MCA file to write.
+	 * @param changeLastUpdate Whether to adjust the timestamps of when the file was saved.
+	 * @param executor The executor to compress the chunks on, or {@code null} to compress them on the calling thread.
+	 * @return The amount of chunks written to the file.
+	 * @throws IOException If something goes wrong during serialization.
+	 * */
+	public static int write(MCAFile mcaFile, File file, boolean changeLastUpdate, Executor executor) throws IOException {
 		File to = file;
 		if (file.exists()) {
 			to = File.createTempFile(to.getName(), null);
 		}
 		int chunks;
 		try (RandomAccessFile raf = new RandomAccessFile(to, "rw")) {
-			chunks = mcaFile.serialize(raf, changeLastUpdate);
+			if (executor == null) {
+				chunks = mcaFile.serialize(raf, changeLastUpdate);
+			} else {
+				chunks = mcaFile.serialize(raf, changeLastUpdate, executor);
+			}
 		}
 
 		if (chunks > 0 && to != file) {
@@ -211,7 +311,7 @@ public final class MCAUtil {
 		return chunk << 4;
 	}
 
-	private static final Pattern mcaFilePattern = Pattern.compile("^.*r\\.(?<regionX>-?\\d+)\\.(?<regionZ>-?\\d+)\\.mca$");
+	static final Pattern mcaFilePattern = Pattern.compile("^.*r\\.(?<regionX>-?\\d+)\\.(?<regionZ>-?\\d+)\\.mca$");
 
 	public static MCAFile newMCAFile(File file) {
 		Matcher m = mcaFilePattern.matcher(file.getName());
@@ -5,21 +5,30 @@ import net.querz.nbt.tag.ByteArrayTag;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.ListTag;
 import net.querz.nbt.tag.LongArrayTag;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class Section {
 
 	private CompoundTag data;
-	private Map<String, List<PaletteIndex>> valueIndexedPalette = new HashMap<>();
+	private Map<BlockState, PaletteIndex> valueIndexedPalette = new HashMap<>();
 	private ListTag<CompoundTag> palette;
 	private byte[] blockLight;
 	private long[] blockStates;
 	private byte[] skyLight;
 	private int dataVersion;
 
+	// layout of blockStates, see updateLayout(int). 0 bits until the layout has been derived from the loaded blockStates
+	private int bits;
+	private boolean padded;
+	private long mask;
+	private int indicesPerLong;
+	private long divideMul;
+
+	// unpacked palette indices while a batch is open, see beginBatch()
+	private int[] batchIndices;
+
 	public Section(CompoundTag sectionRoot, int dataVersion) {
 		this(sectionRoot, dataVersion, ALL_DATA);
 	}
@@ -32,9 +41,16 @@ public class Section {
 			return;
 		}
 		palette = rawPalette.asCompoundTagList();
+		BlockStateRegistry registry = BlockStateRegistry.getGlobal();
 		for (int i = 0; i < palette.size(); i++) {
 			CompoundTag data = palette.get(i);
-			putValueIndexedPalette(data, i);
+			if (registry != null) {
+				BlockStateRegistry.Entry entry = registry.register(BlockState.of(data), data);
+				palette.set(i, entry.paletteEntry);
+				putValueIndexedPalette(entry.state, entry.paletteEntry, i);
+			} else {
+				putValueIndexedPalette(data, i);
+			}
 		}
 
 		ByteArrayTag blockLight = sectionRoot.getByteArrayTag("BlockLight");
@@ -44,8 +60,9 @@ public class Section {
 		if ((loadFlags & BLOCK_LIGHTS) != 0) {
 			this.blockLight = blockLight != null ? blockLight.getValue() : null;
 		}
-		if ((loadFlags & BLOCK_STATES) != 0) {
-			this.blockStates = blockStates != null ? blockStates.getValue() : null;
+		if ((loadFlags & BLOCK_STATES) != 0 && blockStates != null) {
+			// the layout is derived on the first access, so that a section with a corrupt BlockStates length can still be loaded
+			this.blockStates = blockStates.getValue();
 		}
 		if ((loadFlags & SKY_LIGHT) != 0) {
 			this.skyLight = skyLight != null ? skyLight.getValue() : null;
@@ -55,34 +72,17 @@ public class Section {
 	Section() {}
 
 	void putValueIndexedPalette(CompoundTag data, int index) {
-		PaletteIndex leaf = new PaletteIndex(data, index);
-		String name = data.getString("Name");
-		List<PaletteIndex> leaves = valueIndexedPalette.get(name);
-		if (leaves == null) {
-			leaves = new ArrayList<>(1);
-			leaves.add(leaf);
-			valueIndexedPalette.put(name, leaves);
-		} else {
-			for (PaletteIndex pal : leaves) {
-				if (pal.data.equals(data)) {
-					return;
-				}
-			}
-			leaves.add(leaf);
+		putValueIndexedPalette(BlockState.of(data), data, index);
+	}
+
+	private void putValueIndexedPalette(BlockState key, CompoundTag data, int index) {
+		if (!valueIndexedPalette.containsKey(key)) {
+			valueIndexedPalette.put(key, new PaletteIndex(data, index));
 		}
 	}
 
 	PaletteIndex getValueIndexedPalette(CompoundTag data) {
-		List<PaletteIndex> leaves = valueIndexedPalette.get(data.getString("Name"));
-		if (leaves == null) {
-			return null;
-		}
-		for (PaletteIndex leaf : leaves) {
-			if (leaf.data.equals(data)) {
-				return leaf;
-			}
-		}
-		return null;
+		return valueIndexedPalette.get(BlockState.of(data));
 	}
 
 	private static class PaletteIndex {
@@ -129,13 +129,17 @@ public class Section {
 	 *                Recalculating the Palette should only be executed once right before saving the Section to file.
 	 */
 	public void setBlockStateAt(int blockX, int blockY, int blockZ, CompoundTag state, boolean cleanup) {
+		if (batchIndices != null) {
+			batchIndices[getBlockIndex(blockX, blockY, blockZ)] = addToPalette(state);
+			return;
+		}
 		int paletteSizeBefore = palette.size();
 		int paletteIndex = addToPalette(state);
 		//power of 2 --> bits must increase, but only if the palette size changed
 		//otherwise we would attempt to update all blockstates and the entire palette
 		//every time an existing blockstate was added while having 2^x blockstates in the palette
 		if (paletteSizeBefore != palette.size() && (paletteIndex & (paletteIndex - 1)) == 0) {
-			adjustBlockStateBits(null, blockStates);
+			adjustBlockStateBits(null, getPaletteIndices());
 			cleanup = true;
 		}
 
@@ -150,27 +154,28 @@ public class Section {
 	 * Returns the index of the block data in the palette.
 	 * @param blockStateIndex The index of the block in this section, ranging from 0-4095.
 	 * @return The index of the block data in the palette.
+	 * @throws IllegalArgumentException If the block states of this section have a length that does not match any number of bits per index.
 	 * */
 	public int getPaletteIndex(int blockStateIndex) {
-		int bits = blockStates.length >> 6;
-
-		if (dataVersion < 2527) {
-			double blockStatesIndex = blockStateIndex / (4096D / blockStates.length);
-			int longIndex = (int) blockStatesIndex;
-			int startBit = (int) ((blockStatesIndex - Math.floor(blockStatesIndex)) * 64D);
-			if (startBit + bits > 64) {
-				long prev = bitRange(blockStates[longIndex], startBit, 64);
-				long next = bitRange(blockStates[longIndex + 1], 0, startBit + bits - 64);
-				return (int) ((next << 64 - startBit) + prev);
-			} else {
-				return (int) bitRange(blockStates[longIndex], startBit, startBit + bits);
-			}
-		} else {
-			int indicesPerLong = (int) (64D / bits);
-			int blockStatesIndex = blockStateIndex / indicesPerLong;
-			int startBit = (blockStateIndex % indicesPerLong) * bits;
-			return (int) bitRange(blockStates[blockStatesIndex], startBit, startBit + bits);
+		if (batchIndices != null) {
+			return batchIndices[blockStateIndex];
+		}
+		if (bits == 0) {
+			initLayout();
+		}
+		if (padded) {
+			int longIndex = (int) (blockStateIndex * divideMul >>> 32);
+			int startBit = (blockStateIndex - longIndex * indicesPerLong) * bits;
+			return (int) (blockStates[longIndex] >>> startBit & mask);
 		}
+		int bit = blockStateIndex * bits;
+		int longIndex = bit >>> 6;
+		int startBit = bit & 63;
+		long value = blockStates[longIndex] >>> startBit;
+		if (startBit + bits > 64) {
+			value |= blockStates[longIndex + 1] << 64 - startBit;
+		}
+		return (int) (value & mask);
 	}
 
 	/**
@@ -180,23 +185,264 @@ public class Section {
 	 * @param blockStates The block states to be updated.
 	 * */
 	public void setPaletteIndex(int blockIndex, int paletteIndex, long[] blockStates) {
-		int bits = blockStates.length >> 6;
+		if (blockStates != this.blockStates) {
+			// a foreign array, its layout has to be derived from its length
+			int bits = bitsForLength(blockStates, dataVersion, palette.size());
+			int[] indices = new int[4096];
+			unpack(blockStates, bits, dataVersion >= 2527, indices);
+			indices[blockIndex] = paletteIndex & (int) ((1L << bits) - 1);
+			pack(indices, bits, dataVersion >= 2527, blockStates);
+			return;
+		}
+		if (bits == 0) {
+			initLayout();
+		}
+		long value = paletteIndex & mask;
+		if (padded) {
+			int longIndex = (int) (blockIndex * divideMul >>> 32);
+			int startBit = (blockIndex - longIndex * indicesPerLong) * bits;
+			blockStates[longIndex] = blockStates[longIndex] & ~(mask << startBit) | value << startBit;
+			return;
+		}
+		int bit = blockIndex * bits;
+		int longIndex = bit >>> 6;
+		int startBit = bit & 63;
+		blockStates[longIndex] = blockStates[longIndex] & ~(mask << startBit) | value << startBit;
+		if (startBit + bits > 64) {
+			int shift = 64 - startBit;
+			blockStates[longIndex + 1] = blockStates[longIndex + 1] & ~(mask >>> shift) | value >>> shift;
+		}
+	}
+
+	/**
+	 * Captures the layout of {@link #blockStates} so that single indices can be accessed
+	 * with shifts and masks only. Must be called whenever {@link #blockStates} is replaced
+	 * by an array with a different number of bits per index.
+	 * @param bits The number of bits per index of {@link #blockStates}.
+	 * */
+	private void updateLayout(int bits) {
+		this.bits = bits;
+		padded = dataVersion >= 2527;
+		mask = (1L << bits) - 1;
+		indicesPerLong = 64 / bits;
+		// ceil(2^32 / indicesPerLong), so that (i * divideMul) >>> 32 == i / indicesPerLong for all 0 <= i < 4096
+		divideMul = ((1L << 32) + indicesPerLong - 1) / indicesPerLong;
+	}
 
+	/**
+	 * Derives the layout of the block states read from the section's NBT data.
+	 * @throws IllegalArgumentException If the length of the block states does not match any number of bits per index.
+	 * */
+	private void initLayout() {
+		updateLayout(bitsForLength(blockStates, dataVersion, palette.size()));
+	}
+
+	/**
+	 * Starts a batch of block state changes. Until {@link Section#commitBatch()} is called,
+	 * {@link Section#setBlockStateAt(int, int, int, CompoundTag, boolean)} only adds the block state to
+	 * the palette and stores its index in an unpacked buffer, ignoring {@code cleanup}.
+	 * The block states are neither resized nor repacked during the batch, so {@link Section#getBlockStates()}
+	 * does not reflect any changes before the batch is committed.
+	 * Does nothing if a batch has already been started.
+	 * */
+	public void beginBatch() {
+		if (batchIndices == null) {
+			batchIndices = getPaletteIndices();
+		}
+	}
+
+	/**
+	 * @return Whether a batch has been started and not been committed yet.
+	 * */
+	public boolean isBatching() {
+		return batchIndices != null;
+	}
+
+	/**
+	 * Ends a batch started with {@link Section#beginBatch()} by cleaning up the palette and
+	 * packing all changed palette indices into the block states exactly once.
+	 * Does nothing if no batch has been started.
+	 * */
+	public void commitBatch() {
+		if (batchIndices == null) {
+			return;
+		}
+		int[] indices = batchIndices;
+		batchIndices = null;
+		adjustBlockStateBits(cleanupPalette(indices), indices);
+	}
+
+	/**
+	 * Calls {@link Section#getPaletteIndices(int[])} with a new array.
+	 * @return The palette indices of all 4096 blocks of this section.
+	 * */
+	public int[] getPaletteIndices() {
+		return getPaletteIndices(new int[4096]);
+	}
+
+	/**
+	 * Unpacks the palette indices of all blocks of this section in one pass.
+	 * The index of a block in the returned array is the same as in {@link Section#getPaletteIndex(int)}.
+	 * @param buffer The array to unpack the palette indices into, must have a length of at least 4096.
+	 * @return {@code buffer}
+	 * @throws IllegalArgumentException If {@code buffer} is shorter than 4096, or if the block states of this section
+	 *                                  have a length that does not match any number of bits per index.
+	 * */
+	public int[] getPaletteIndices(int[] buffer) {
+		if (buffer.length < 4096) {
+			throw new IllegalArgumentException("buffer must have a length of at least 4096");
+		}
+		if (batchIndices != null) {
+			System.arraycopy(batchIndices, 0, buffer, 0, 4096);
+			return buffer;
+		}
+		if (bits == 0) {
+			initLayout();
+		}
+		unpack(blockStates, bits, padded, buffer);
+		return buffer;
+	}
+
+	/**
+	 * Packs the palette indices of all blocks of this section into new block states, using the
+	 * smallest number of bits per block that fits the current palette. Does not modify the palette.
+	 * @param paletteIndices The palette indices of all 4096 blocks of this section.
+	 * @throws IllegalArgumentException If {@code paletteIndices} is shorter than 4096 or contains
+	 *                                  an index that is not part of the palette.
+	 * */
+	public void setPaletteIndices(int[] paletteIndices) {
+		if (paletteIndices.length < 4096) {
+			throw new IllegalArgumentException("palette indices must have a length of at least 4096");
+		}
+		for (int i = 0; i < 4096; i++) {
+			if (paletteIndices[i] < 0 || paletteIndices[i] >= palette.size()) {
+				throw new IllegalArgumentException("invalid palette index " + paletteIndices[i] + " at " + i);
+			}
+		}
+		if (batchIndices != null) {
+			System.arraycopy(paletteIndices, 0, batchIndices, 0, 4096);
+			return;
+		}
+		int bits = bitsForPaletteSize(palette.size());
+		boolean padded = dataVersion >= 2527;
+		long[] packed = new long[packedLength(bits, padded)];
+		pack(paletteIndices, bits, padded, packed);
+		blockStates = packed;
+		updateLayout(bits);
+	}
+
+	int getBitsPerIndex() {
+		if (bits == 0) {
+			initLayout();
+		}
+		return bits;
+	}
+
+	/**
+	 * Derives the number of bits per index from the length of packed block states.
+	 * @param blockStates The packed block states.
+	 * @param dataVersion The DataVersion of the section, determines the layout.
+	 * @param paletteSize The size of the palette, used to tell 11 and 12 bits apart in the padded layout.
+	 * @return The number of bits per index.
+	 * @throws IllegalArgumentException If the length does not match any number of bits per index.
+	 * */
+	static int bitsForLength(long[] blockStates, int dataVersion, int paletteSize) {
 		if (dataVersion < 2527) {
-			double blockStatesIndex = blockIndex / (4096D / blockStates.length);
-			int longIndex = (int) blockStatesIndex;
-			int startBit = (int) ((blockStatesIndex - Math.floor(longIndex)) * 64D);
-			if (startBit + bits > 64) {
-				blockStates[longIndex] = updateBits(blockStates[longIndex], paletteIndex, startBit, 64);
-				blockStates[longIndex + 1] = updateBits(blockStates[longIndex + 1], paletteIndex, startBit - 64, startBit + bits - 64);
-			} else {
-				blockStates[longIndex] = updateBits(blockStates[longIndex], paletteIndex, startBit, startBit + bits);
+			if (blockStates.length % 64 != 0 || blockStates.length == 0) {
+				throw new IllegalArgumentException("invalid BlockStates length " + blockStates.length);
+			}
+			return blockStates.length >> 6;
+		}
+		int bits = bitsForPaletteSize(paletteSize);
+		if (packedLength(bits, true) == blockStates.length) {
+			return bits;
+		}
+		for (bits = 4; bits <= 32; bits++) {
+			if (packedLength(bits, true) == blockStates.length) {
+				return bits;
+			}
+		}
+		throw new IllegalArgumentException("invalid BlockStates length " + blockStates.length);
+	}
+
+	static int bitsForPaletteSize(int paletteSize) {
+		return Math.max(4, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+	}
+
+	static int packedLength(int bits, boolean padded) {
+		if (padded) {
+			int indicesPerLong = 64 / bits;
+			return (4096 + indicesPerLong - 1) / indicesPerLong;
+		}
+		return bits * 64;
+	}
+
+	/**
+	 * Unpacks 4096 palette indices.
+	 * @param blockStates The packed indices.
+	 * @param bits The number of bits per index.
+	 * @param padded {@code true} for the layout used since DataVersion 2527, where indices never span two longs.
+	 * @param dest The array to unpack the indices into.
+	 * */
+	static void unpack(long[] blockStates, int bits, boolean padded, int[] dest) {
+		long mask = (1L << bits) - 1;
+		if (padded) {
+			int indicesPerLong = 64 / bits;
+			int i = 0;
+			for (int l = 0; i < 4096; l++) {
+				long value = blockStates[l];
+				int end = Math.min(i + indicesPerLong, 4096);
+				for (; i < end; i++) {
+					dest[i] = (int) (value & mask);
+					value >>>= bits;
+				}
 			}
 		} else {
-			int indicesPerLong = (int) (64D / bits);
-			int blockStatesIndex = blockIndex / indicesPerLong;
-			int startBit = (blockIndex % indicesPerLong) * bits;
-			blockStates[blockStatesIndex] = updateBits(blockStates[blockStatesIndex], paletteIndex, startBit, startBit + bits);
+			int bit = 0;
+			for (int i = 0; i < 4096; i++, bit += bits) {
+				int l = bit >>> 6;
+				int offset = bit & 63;
+				long value = blockStates[l] >>> offset;
+				if (offset + bits > 64) {
+					value |= blockStates[l + 1] << (64 - offset);
+				}
+				dest[i] = (int) (value & mask);
+			}
+		}
+	}
+
+	/**
+	 * Packs 4096 palette indices, the inverse of {@link Section#unpack(long[], int, boolean, int[])}.
+	 * @param indices The indices to pack, each must fit into {@code bits} bits.
+	 * @param bits The number of bits per index.
+	 * @param padded {@code true} for the layout used since DataVersion 2527, where indices never span two longs.
+	 * @param dest The array to pack the indices into, with a length of at least {@link Section#packedLength(int, boolean)}.
+	 *             Its previous content is overwritten.
+	 * */
+	static void pack(int[] indices, int bits, boolean padded, long[] dest) {
+		if (padded) {
+			int indicesPerLong = 64 / bits;
+			int i = 0;
+			for (int l = 0; i < 4096; l++) {
+				long value = 0;
+				int end = Math.min(i + indicesPerLong, 4096);
+				for (int shift = 0; i < end; i++, shift += bits) {
+					value |= (long) indices[i] << shift;
+				}
+				dest[l] = value;
+			}
+		} else {
+			Arrays.fill(dest, 0, bits * 64, 0L);
+			int bit = 0;
+			for (int i = 0; i < 4096; i++, bit += bits) {
+				int l = bit >>> 6;
+				int offset = bit & 63;
+				long value = indices[i] & 0xFFFFFFFFL;
+				dest[l] |= value << offset;
+				if (offset + bits > 64) {
+					dest[l + 1] |= value >>> (64 - offset);
+				}
+			}
 		}
 	}
 
@@ -209,12 +455,19 @@ public class Section {
 	}
 
 	int addToPalette(CompoundTag data) {
+		BlockState key = BlockState.of(data);
 		PaletteIndex index;
-		if ((index = getValueIndexedPalette(data)) != null) {
+		if ((index = valueIndexedPalette.get(key)) != null) {
 			return index.index;
 		}
+		BlockStateRegistry registry = BlockStateRegistry.getGlobal();
+		if (registry != null) {
+			BlockStateRegistry.Entry entry = registry.register(key, data);
+			key = entry.state;
+			data = entry.paletteEntry;
+		}
 		palette.add(data);
-		putValueIndexedPalette(data, palette.size() - 1);
+		valueIndexedPalette.put(key, new PaletteIndex(data, palette.size() - 1));
 		return palette.size() - 1;
 	}
 
@@ -222,79 +475,83 @@ public class Section {
 		return (blockY & 0xF) * 256 + (blockZ & 0xF) * 16 + (blockX & 0xF);
 	}
 
-	static long updateBits(long n, long m, int i, int j) {
-		//replace i to j in n with j - i bits of m
-		long mShifted = i > 0 ? (m & ((1L << j - i) - 1)) << i : (m & ((1L << j - i) - 1)) >>> -i;
-		return ((n & ((j > 63 ? 0 : (~0L << j)) | (i < 0 ? 0 : ((1L << i) - 1L)))) | mShifted);
-	}
-
-	static long bitRange(long value, int from, int to) {
-		int waste = 64 - to;
-		return (value << waste) >>> (waste + from);
-	}
-
 	/**
 	 * This method recalculates the palette and its indices.
 	 * This should only be used moderately to avoid unnecessary recalculation of the palette indices.
 	 * Recalculating the Palette should only be executed once right before saving the Section to file.
 	 */
 	public void cleanupPaletteAndBlockStates() {
-		Map<Integer, Integer> oldToNewMapping = cleanupPalette();
-		adjustBlockStateBits(oldToNewMapping, blockStates);
+		if (batchIndices != null) {
+			commitBatch();
+			return;
+		}
+		int[] indices = getPaletteIndices();
+		int[] oldToNewMapping = cleanupPalette(indices);
+		if (oldToNewMapping == null && bits == bitsForPaletteSize(palette.size())) {
+			//nothing was removed and the block states already use the smallest number of bits
+			return;
+		}
+		adjustBlockStateBits(oldToNewMapping, indices);
 	}
 
-	private Map<Integer, Integer> cleanupPalette() {
-		//create index - palette mapping
-		Map<Integer, Integer> allIndices = new HashMap<>();
+	/**
+	 * Removes all unused entries from the palette, except minecraft:air at index 0.
+	 * @param indices The unpacked palette indices of this section.
+	 * @return A table mapping old to new palette indices, or {@code null} if no entries were removed.
+	 * */
+	private int[] cleanupPalette(int[] indices) {
+		//mark all used palette indices
+		long[] used = new long[(palette.size() + 63) >>> 6];
+		//we need to keep minecraft:air
+		used[0] = 1L;
 		for (int i = 0; i < 4096; i++) {
-			int paletteIndex = getPaletteIndex(i);
-			allIndices.put(paletteIndex, paletteIndex);
-		}
-		//delete unused blocks from palette
-		//start at index 1 because we need to keep minecraft:air
-		int index = 1;
-		valueIndexedPalette = new HashMap<>(valueIndexedPalette.size());
-		putValueIndexedPalette(palette.get(0), 0);
-		for (int i = 1; i < palette.size(); i++) {
-			if (!allIndices.containsKey(index)) {
-				palette.remove(i);
-				i--;
-			} else {
-				putValueIndexedPalette(palette.get(i), i);
-				allIndices.put(index, i);
-			}
-			index++;
+			used[indices[i] >>> 6] |= 1L << indices[i];
+		}
+		int usedCount = 0;
+		for (long word : used) {
+			usedCount += Long.bitCount(word);
+		}
+		if (usedCount == palette.size()) {
+			return null;
 		}
 
-		return allIndices;
+		//move used entries to the front and delete the rest from the end
+		int[] oldToNewMapping = new int[palette.size()];
+		valueIndexedPalette = new HashMap<>(usedCount);
+		int index = 0;
+		for (int i = 0; i < palette.size(); i++) {
+			if ((used[i >>> 6] & 1L << i) != 0) {
+				if (index != i) {
+					palette.set(index, palette.get(i));
+				}
+				putValueIndexedPalette(palette.get(index), index);
+				oldToNewMapping[i] = index++;
+			}
+		}
+		for (int i = palette.size() - 1; i >= index; i--) {
+			palette.remove(i);
+		}
+		return oldToNewMapping;
 	}
 
-	void adjustBlockStateBits(Map<Integer, Integer> oldToNewMapping, long[] blockStates) {
+	void adjustBlockStateBits(int[] oldToNewMapping, int[] indices) {
 		//increases or decreases the amount of bits used per BlockState
 		//based on the size of the palette. oldToNewMapping can be used to update indices
-		//if the palette had been cleaned up before using MCAFile#cleanupPalette().
-
-		int newBits = 32 - Integer.numberOfLeadingZeros(palette.size() - 1);
-		newBits = Math.max(newBits, 4);
+		//if the palette had been cleaned up before using Section#cleanupPalette(int[]).
 
-		long[] newBlockStates;
+		int newBits = bitsForPaletteSize(palette.size());
+		boolean padded = dataVersion >= 2527;
+		int newLength = packedLength(newBits, padded);
 
-		if (dataVersion < 2527) {
-			newBlockStates = newBits == blockStates.length / 64 ? blockStates : new long[newBits * 64];
-		} else {
-			int newLength = (int) Math.ceil(4096D / (64D / newBits));
-			newBlockStates = newBits == blockStates.length / 64 ? blockStates : new long[newLength];
-		}
 		if (oldToNewMapping != null) {
 			for (int i = 0; i < 4096; i++) {
-				setPaletteIndex(i, oldToNewMapping.get(getPaletteIndex(i)), newBlockStates);
-			}
-		} else {
-			for (int i = 0; i < 4096; i++) {
-				setPaletteIndex(i, getPaletteIndex(i), newBlockStates);
+				indices[i] = oldToNewMapping[indices[i]];
 			}
 		}
+		long[] newBlockStates = newLength == blockStates.length ? blockStates : new long[newLength];
+		pack(indices, newBits, padded, newBlockStates);
 		this.blockStates = newBlockStates;
+		updateLayout(newBits);
 	}
 
 	/**
@@ -327,15 +584,18 @@ public class Section {
 	 * Sets the block state indices to a custom value.
 	 * @param blockStates The block state indices.
 	 * @throws NullPointerException If <code>blockStates</code> is <code>null</code>
-	 * @throws IllegalArgumentException When <code>blockStates</code>' length is &lt; 256 or &gt; 4096 and is not a multiple of 64
+	 * @throws IllegalArgumentException When <code>blockStates</code>' length is &lt; 256 or &gt; 4096 and is not a multiple of 64,
+	 *                                  or, since DataVersion 2527, not the length of a padded array with 4 to 32 bits per index
 	 */
 	public void setBlockStates(long[] blockStates) {
 		if (blockStates == null) {
 			throw new NullPointerException("BlockStates cannot be null");
-		} else if (blockStates.length % 64 != 0 || blockStates.length < 256 || blockStates.length > 4096) {
+		} else if (dataVersion < 2527 && (blockStates.length % 64 != 0 || blockStates.length < 256 || blockStates.length > 4096)) {
 			throw new IllegalArgumentException("BlockStates must have a length > 255 and < 4097 and must be divisible by 64");
 		}
+		int bits = bitsForLength(blockStates, dataVersion, palette == null ? 0 : palette.size());
 		this.blockStates = blockStates;
+		updateLayout(bits);
 	}
 
 	/**
@@ -364,10 +624,12 @@ public class Section {
 	public static Section newSection() {
 		Section s = new Section();
 		s.blockStates = new long[256];
+		s.updateLayout(4);
 		s.palette = new ListTag<>(CompoundTag.class);
 		CompoundTag air = new CompoundTag();
 		air.putString("Name", "minecraft:air");
-		s.palette.add(air);
+		BlockStateRegistry registry = BlockStateRegistry.getGlobal();
+		s.palette.add(registry != null ? registry.canonicalize(air) : air);
 		s.data = new CompoundTag();
 		return s;
 	}
@@ -375,11 +637,12 @@ public class Section {
 	/**
 	 * Updates the raw CompoundTag that this Section is based on.
 	 * This must be called before saving a Section to disk if the Section was manually created
-	 * to set the Y of this Section.
+	 * to set the Y of this Section. A pending batch is committed first.
 	 * @param y The Y-value of this Section
 	 * @return A reference to the raw CompoundTag this Section is based on
 	 */
 	public CompoundTag updateHandle(int y) {
+		commitBatch();
 		data.putByte("Y", (byte) y);
 		if (palette != null) {
 			data.put("Palette", palette);
@@ -0,0 +1,216 @@
+package net.querz.mca;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+
+/**
+ * Reads all region files of a world in parallel and passes every chunk to a {@link ChunkVisitor}.
+ * The region directory is listed lazily and at most {@code maxRegionsInFlight} regions are read at the same time,
+ * each of them holding only the chunk that is currently visited, so memory use does not grow with the size of the world.
+ * A region that cannot be read is reported to the {@link Listener} and the scan continues with the next region.
+ * */
+public final class WorldScanner {
+
+	/**
+	 * Receives the chunks of a world. Chunks of different regions are visited concurrently,
+	 * so implementations must be thread safe.
+	 * */
+	public interface ChunkVisitor {
+
+		/**
+		 * @param chunkX The absolute x-coordinate of the chunk.
+		 * @param chunkZ The absolute z-coordinate of the chunk.
+		 * @param chunk The chunk, loaded with the {@link LoadFlags} of the scanner.
+		 * @throws IOException To stop reading the region of this chunk, the exception is reported to the {@link Listener}.
+		 * */
+		void visitChunk(int chunkX, int chunkZ, Chunk chunk) throws IOException;
+	}
+
+	/**
+	 * Receives the progress of a scan. Called concurrently from the threads of the executor,
+	 * so implementations must be thread safe. A {@code RuntimeException} thrown by the listener is not reported
+	 * to {@link Listener#regionFailed(File, Exception)}. The scan continues and the first of these exceptions
+	 * is rethrown by {@link WorldScanner#scan(File, ChunkVisitor, Listener)} after all regions have finished.
+	 * */
+	public interface Listener {
+
+		/**
+		 * Called after all chunks of a region have been visited.
+		 * @param region The region file.
+		 * @param chunks The number of chunks visited in this region.
+		 * */
+		void regionScanned(File region, int chunks);
+
+		/**
+		 * Called when a region could not be read completely. Chunks of this region that have been
+		 * visited before the failure are not visited again.
+		 * @param region The region file.
+		 * @param ex The exception thrown while reading the region or by the {@link ChunkVisitor}.
+		 * */
+		void regionFailed(File region, Exception ex);
+	}
+
+	private final long loadFlags;
+	private final Executor executor;
+	private final int maxRegionsInFlight;
+
+	/**
+	 * @param loadFlags A logical or of {@link LoadFlags} constants indicating what data should be loaded
+	 * @param executor The executor to read the regions on.
+	 * @param maxRegionsInFlight The maximum number of regions submitted to {@code executor} at the same time.
+	 *                           Should be at least the number of threads of {@code executor}.
+	 * @throws IllegalArgumentException If {@code maxRegionsInFlight} is less than 1.
+	 * */
+	public WorldScanner(long loadFlags, Executor executor, int maxRegionsInFlight) {
+		if (executor == null) {
+			throw new NullPointerException("executor cannot be null");
+		}
+		if (maxRegionsInFlight < 1) {
+			throw new IllegalArgumentException("maxRegionsInFlight must be at least 1: " + maxRegionsInFlight);
+		}
+		this.loadFlags = loadFlags;
+		this.executor = executor;
+		this.maxRegionsInFlight = maxRegionsInFlight;
+	}
+
+	/**
+	 * Reads every region file named {@code r.<x>.<z>.mca} in the region directory of {@code world}
+	 * and blocks until all of them have been scanned or have failed.
+	 * @param world The world directory containing a {@code region} directory, or the region directory itself.
+	 * @param visitor The visitor receiving the chunks.
+	 * @param listener The listener receiving the progress and the errors of single regions.
+	 * @return The number of chunks visited, including the chunks visited in regions that failed afterwards.
+	 * @throws IOException If the region directory could not be listed, or an {@code InterruptedIOException}
+	 *                     if the calling thread was interrupted.
+	 * @throws RejectedExecutionException If the executor rejected a region.
+	 * @throws RuntimeException The first exception thrown by the listener.
+	 * When the scan ends early, regions that are still being read are stopped after their current chunk
+	 * and waited for, so neither the visitor nor the listener is called after this method returned.
+	 * */
+	public long scan(File world, final ChunkVisitor visitor, final Listener listener) throws IOException {
+		if (visitor == null) {
+			throw new NullPointerException("visitor cannot be null");
+		}
+		if (listener == null) {
+			throw new NullPointerException("listener cannot be null");
+		}
+		File regionDir = new File(world, "region");
+		if (!regionDir.isDirectory()) {
+			regionDir = world;
+		}
+
+		final Semaphore inFlight = new Semaphore(maxRegionsInFlight);
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final AtomicLong visited = new AtomicLong();
+		final AtomicReference<RuntimeException> listenerFailure = new AtomicReference<>();
+		try (DirectoryStream<Path> regions = Files.newDirectoryStream(regionDir.toPath(), "r.*.*.mca")) {
+			for (Path path : regions) {
+				final File region = path.toFile();
+				inFlight.acquire();
+				try {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								int chunks;
+								try {
+									chunks = scanRegion(region, visitor, cancelled, visited);
+								} catch (Exception ex) {
+									listener.regionFailed(region, ex);
+									return;
+								}
+								listener.regionScanned(region, chunks);
+							} catch (RuntimeException ex) {
+								listenerFailure.compareAndSet(null, ex);
+							} finally {
+								inFlight.release();
+							}
+						}
+					});
+				} catch (RejectedExecutionException ex) {
+					inFlight.release();
+					throw abort(ex, inFlight, cancelled, listenerFailure);
+				}
+			}
+		} catch (DirectoryIteratorException ex) {
+			throw abort(ex.getCause(), inFlight, cancelled, listenerFailure);
+		} catch (InterruptedException ex) {
+			throw abortInterrupted(ex, inFlight, cancelled, listenerFailure);
+		}
+
+		try {
+			inFlight.acquire(maxRegionsInFlight);
+		} catch (InterruptedException ex) {
+			throw abortInterrupted(ex, inFlight, cancelled, listenerFailure);
+		}
+		RuntimeException failure = listenerFailure.get();
+		if (failure != null) {
+			throw failure;
+		}
+		return visited.get();
+	}
+
+	// counts every visited chunk in visited, including those of a region that fails later
+	private int scanRegion(File region, ChunkVisitor visitor, AtomicBoolean cancelled, AtomicLong visited) throws IOException {
+		Matcher m = MCAUtil.mcaFilePattern.matcher(region.getName());
+		if (!m.find()) {
+			throw new IllegalArgumentException("invalid mca file name: " + region.getName());
+		}
+		int chunkXOffset = MCAUtil.regionToChunk(Integer.parseInt(m.group("regionX")));
+		int chunkZOffset = MCAUtil.regionToChunk(Integer.parseInt(m.group("regionZ")));
+		int chunks = 0;
+		try (RandomAccessFile raf = new RandomAccessFile(region, "r")) {
+			FileChannel channel = raf.getChannel();
+			// the game creates empty region files that never receive any chunks
+			if (channel.size() == 0) {
+				return 0;
+			}
+			MCAHeader header = MCAHeader.read(channel);
+			for (int i = 0; i < 1024 && !cancelled.get(); i++) {
+				if (!header.hasChunk(i)) {
+					continue;
+				}
+				Chunk chunk = new Chunk(header.timestamps[i]);
+				chunk.deserialize(channel, header.position(i), header.size(i), loadFlags);
+				visitor.visitChunk(chunkXOffset + (i & 0x1F), chunkZOffset + (i >> 5), chunk);
+				visited.incrementAndGet();
+				chunks++;
+			}
+		}
+		return chunks;
+	}
+
+	// ends the scan early: stops the regions that have already been submitted after their current chunk
+	// and waits for them, so that ex is only thrown once no region is running anymore
+	private <X extends Exception> X abort(X ex, Semaphore inFlight, AtomicBoolean cancelled, AtomicReference<RuntimeException> listenerFailure) {
+		cancelled.set(true);
+		inFlight.acquireUninterruptibly(maxRegionsInFlight);
+		RuntimeException failure = listenerFailure.get();
+		if (failure != null) {
+			ex.addSuppressed(failure);
+		}
+		return ex;
+	}
+
+	private InterruptedIOException abortInterrupted(InterruptedException ex, Semaphore inFlight, AtomicBoolean cancelled, AtomicReference<RuntimeException> listenerFailure) {
+		InterruptedIOException iex = new InterruptedIOException("interrupted while scanning regions");
+		iex.initCause(ex);
+		abort(iex, inFlight, cancelled, listenerFailure);
+		Thread.currentThread().interrupt();
+		return iex;
+	}
+}
@@ -0,0 +1,145 @@
+package net.querz.mca;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shares {@code Inflater} and {@code Deflater} instances between zlib streams, so that the native
+ * zlib context of each instance is reused instead of being allocated for every chunk and
+ * released by the garbage collector.
+ * An instance is returned to the pool when the stream using it is closed. Streams that are never
+ * closed simply leave their instance to the garbage collector. At most {@link #MAX_POOLED}
+ * idle instances of each kind are kept, additional ones are ended immediately.
+ * */
+final class ZlibPool {
+
+	static final int MAX_POOLED = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+	private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger idleInflaters = new AtomicInteger();
+	private static final AtomicInteger idleDeflaters = new AtomicInteger();
+
+	private ZlibPool() {}
+
+	/**
+	 * Creates a stream decompressing zlib data from {@code in} with a pooled {@code Inflater}.
+	 * @param in The stream to read compressed data from.
+	 * @return The decompressing stream. Closing it returns the {@code Inflater} to the pool.
+	 * */
+	static InputStream inflate(InputStream in) {
+		Inflater inflater = inflaters.poll();
+		if (inflater == null) {
+			inflater = new Inflater();
+		} else {
+			idleInflaters.decrementAndGet();
+		}
+		return new PooledInflaterInputStream(in, inflater);
+	}
+
+	/**
+	 * Creates a stream compressing data to {@code out} in the zlib format with a pooled {@code Deflater}.
+	 * @param out The stream to write compressed data to.
+	 * @param level The compression level, see {@link Deflater#setLevel(int)}.
+	 * @param strategy The compression strategy, see {@link Deflater#setStrategy(int)}.
+	 * @return The compressing stream. Closing it returns the {@code Deflater} to the pool.
+	 * @throws IllegalArgumentException If the level or the strategy is invalid.
+	 * */
+	static OutputStream deflate(OutputStream out, int level, int strategy) {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			deflater = new Deflater();
+		} else {
+			idleDeflaters.decrementAndGet();
+		}
+		try {
+			deflater.setLevel(level);
+			deflater.setStrategy(strategy);
+		} catch (IllegalArgumentException ex) {
+			release(deflater);
+			throw ex;
+		}
+		return new PooledDeflaterOutputStream(out, deflater);
+	}
+
+	private static void release(Inflater inflater) {
+		if (idleInflaters.incrementAndGet() > MAX_POOLED) {
+			idleInflaters.decrementAndGet();
+			inflater.end();
+			return;
+		}
+		inflater.reset();
+		inflaters.offer(inflater);
+	}
+
+	private static void release(Deflater deflater) {
+		if (idleDeflaters.incrementAndGet() > MAX_POOLED) {
+			idleDeflaters.decrementAndGet();
+			deflater.end();
+			return;
+		}
+		deflater.reset();
+		deflaters.offer(deflater);
+	}
+
+	private static class PooledInflaterInputStream extends InflaterInputStream {
+
+		private boolean released;
+
+		PooledInflaterInputStream(InputStream in, Inflater inflater) {
+			super(in, inflater, BUFFER_SIZE);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (released) {
+				return;
+			}
+			released = true;
+			try {
+				super.close();
+			} finally {
+				release(inf);
+			}
+		}
+	}
+
+	private static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+
+		private boolean released;
+
+		PooledDeflaterOutputStream(OutputStream out, Deflater deflater) {
+			super(out, deflater, BUFFER_SIZE);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (released) {
+				return;
+			}
+			released = true;
+			boolean finished = false;
+			try {
+				super.close();
+				finished = true;
+			} finally {
+				// a deflater that failed while finishing may be in any state, so it is not reused
+				if (finished) {
+					release(def);
+				} else {
+					def.end();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package net.querz.nbt.io;
+
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes and encodes the modified UTF-8 used by {@link java.io.DataInput#readUTF()} and
+ * {@link java.io.DataOutput#writeUTF(String)} on caller-provided scratch arrays.
+ * Almost all strings in NBT data are pure ASCII, which both directions handle in a tight loop
+ * before falling back to the general multi-byte code.
+ * */
+final class ModifiedUTF8 {
+
+	static final int MAX_LENGTH = 65535;
+
+	private ModifiedUTF8() {}
+
+	/**
+	 * Decodes modified UTF-8, deduplicating the result with {@code cache}.
+	 * Pure ASCII strings are hashed while they are scanned, so a string already held by {@code cache}
+	 * is returned without creating a new one.
+	 * @param bytes The encoded bytes.
+	 * @param length The number of encoded bytes.
+	 * @param chars A scratch array with a length of at least {@code length}.
+	 * @param cache The cache to deduplicate the string with, or {@code null}.
+	 * @return The decoded string.
+	 * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+	 * */
+	static String decode(byte[] bytes, int length, char[] chars, StringCache cache) throws UTFDataFormatException {
+		int hash = 0;
+		int ascii = 0;
+		for (byte c; ascii < length && (c = bytes[ascii]) >= 0; ascii++) {
+			hash = 31 * hash + c;
+		}
+		if (ascii == length) {
+			if (cache == null) {
+				return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+			}
+			String cached = cache.find(bytes, length, hash);
+			if (cached != null) {
+				return cached;
+			}
+			return cache.store(new String(bytes, 0, length, StandardCharsets.ISO_8859_1), hash);
+		}
+		String s = decode(bytes, length, ascii, chars);
+		return cache == null ? s : cache.deduplicate(s);
+	}
+
+	/**
+	 * Decodes modified UTF-8 whose first {@code asciiPrefix} bytes are already known to be ASCII.
+	 * @param bytes The encoded bytes.
+	 * @param length The number of encoded bytes.
+	 * @param asciiPrefix The number of leading bytes that are ASCII.
+	 * @param chars A scratch array with a length of at least {@code length}.
+	 * @return The decoded string.
+	 * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+	 * */
+	static String decode(byte[] bytes, int length, int asciiPrefix, char[] chars) throws UTFDataFormatException {
+		int count = 0;
+		int charCount = 0;
+		int char2, char3;
+		for (; count < asciiPrefix; count++) {
+			chars[charCount++] = (char) bytes[count];
+		}
+		while (count < length) {
+			int c = bytes[count] & 0xFF;
+			switch (c >> 4) {
+				case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+					// 0xxxxxxx
+					count++;
+					chars[charCount++] = (char) c;
+					break;
+				case 12: case 13:
+					// 110x xxxx 10xx xxxx
+					count += 2;
+					if (count > length) {
+						throw new UTFDataFormatException("malformed input: partial character at end");
+					}
+					char2 = bytes[count - 1];
+					if ((char2 & 0xC0) != 0x80) {
+						throw new UTFDataFormatException("malformed input around byte " + count);
+					}
+					chars[charCount++] = (char) ((c & 0x1F) << 6 | char2 & 0x3F);
+					break;
+				case 14:
+					// 1110 xxxx 10xx xxxx 10xx xxxx
+					count += 3;
+					if (count > length) {
+						throw new UTFDataFormatException("malformed input: partial character at end");
+					}
+					char2 = bytes[count - 2];
+					char3 = bytes[count - 1];
+					if ((char2 & 0xC0) != 0x80 || (char3 & 0xC0) != 0x80) {
+						throw new UTFDataFormatException("malformed input around byte " + (count - 1));
+					}
+					chars[charCount++] = (char) ((c & 0x0F) << 12 | (char2 & 0x3F) << 6 | char3 & 0x3F);
+					break;
+				default:
+					// 10xx xxxx, 1111 xxxx
+					throw new UTFDataFormatException("malformed input around byte " + count);
+			}
+		}
+		return new String(chars, 0, charCount);
+	}
+
+	/**
+	 * Encodes a string in modified UTF-8 in a single pass.
+	 * @param s The string to encode.
+	 * @param bytes The array to encode into, with at least {@code offset + 3 * s.length()} bytes.
+	 * @param offset The index of the first byte to write.
+	 * @return The number of bytes written.
+	 * @throws UTFDataFormatException If the encoded string is longer than {@link ModifiedUTF8#MAX_LENGTH} bytes.
+	 * */
+	static int encode(String s, byte[] bytes, int offset) throws UTFDataFormatException {
+		int length = s.length();
+		int i = 0;
+		int o = offset;
+		for (char c; i < length && (c = s.charAt(i)) != 0 && c < 0x80; i++) {
+			bytes[o++] = (byte) c;
+		}
+		for (; i < length; i++) {
+			char c = s.charAt(i);
+			if (c != 0 && c < 0x80) {
+				bytes[o++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[o++] = (byte) (0xC0 | c >> 6 & 0x1F);
+				bytes[o++] = (byte) (0x80 | c & 0x3F);
+			} else {
+				bytes[o++] = (byte) (0xE0 | c >> 12 & 0x0F);
+				bytes[o++] = (byte) (0x80 | c >> 6 & 0x3F);
+				bytes[o++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		int encoded = o - offset;
+		if (encoded > MAX_LENGTH) {
+			throw new UTFDataFormatException("encoded string too long: " + encoded + " bytes");
+		}
+		return encoded;
+	}
+}
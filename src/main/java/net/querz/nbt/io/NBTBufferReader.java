@@ -0,0 +1,199 @@
+package net.querz.nbt.io;
+
+import net.querz.io.MaxDepthIO;
+import net.querz.nbt.tag.ByteArrayTag;
+import net.querz.nbt.tag.ByteTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.EndTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.IntArrayTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads binary NBT data directly from a heap or direct {@link ByteBuffer}, e.g. an in-memory chunk
+ * or a memory mapped file, without the per-primitive overhead of a {@link java.io.DataInputStream}.
+ * Int and long arrays are transferred in bulk.
+ * Reading starts at the buffer's position and advances it, the buffer's byte order is set to big endian.
+ * The result is the same as reading the same bytes with {@link NBTInputStream}.
+ * */
+public final class NBTBufferReader extends MaxDepthIO {
+
+	private final ByteBuffer buffer;
+	private final StringCache keyCache;
+	private final StringCache valueCache;
+	// scratch buffers for decoding strings, grown on demand
+	private byte[] bytes = new byte[64];
+	private char[] chars = new char[64];
+
+	public NBTBufferReader(ByteBuffer buffer) {
+		this(buffer, null, null);
+	}
+
+	/**
+	 * Creates an NBTBufferReader deduplicating the strings it reads.
+	 * @param buffer The buffer to read from.
+	 * @param keyCache The cache for compound keys and tag names, or {@code null} to not deduplicate them.
+	 * @param valueCache The cache for the values of String tags, or {@code null} to not deduplicate them.
+	 *                   May be the same as {@code keyCache}.
+	 * */
+	public NBTBufferReader(ByteBuffer buffer, StringCache keyCache, StringCache valueCache) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		this.keyCache = keyCache;
+		this.valueCache = valueCache;
+	}
+
+	/**
+	 * Reads a named tag.
+	 * @param maxDepth The maximum nesting depth.
+	 * @return The named tag that has been read.
+	 * @throws IOException If the buffer does not contain valid NBT data.
+	 * */
+	public NamedTag readTag(int maxDepth) throws IOException {
+		try {
+			byte id = buffer.get();
+			return new NamedTag(readString(keyCache), read(id, maxDepth));
+		} catch (BufferUnderflowException ex) {
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * Reads an unnamed tag.
+	 * @param maxDepth The maximum nesting depth.
+	 * @return The tag that has been read.
+	 * @throws IOException If the buffer does not contain valid NBT data.
+	 * */
+	public Tag<?> readRawTag(int maxDepth) throws IOException {
+		try {
+			return read(buffer.get(), maxDepth);
+		} catch (BufferUnderflowException ex) {
+			throw new EOFException();
+		}
+	}
+
+	Tag<?> read(byte typeId, int maxDepth) throws IOException {
+		switch (typeId) {
+			case EndTag.ID:
+				return EndTag.INSTANCE;
+			case ByteTag.ID:
+				return new ByteTag(buffer.get());
+			case ShortTag.ID:
+				return new ShortTag(buffer.getShort());
+			case IntTag.ID:
+				return new IntTag(buffer.getInt());
+			case LongTag.ID:
+				return new LongTag(buffer.getLong());
+			case FloatTag.ID:
+				return new FloatTag(buffer.getFloat());
+			case DoubleTag.ID:
+				return new DoubleTag(buffer.getDouble());
+			case StringTag.ID:
+				return new StringTag(readString(valueCache));
+			case ListTag.ID:
+				return readListTag(maxDepth);
+			case CompoundTag.ID:
+				return readCompoundTag(maxDepth);
+			case ByteArrayTag.ID:
+				byte[] b = new byte[readArrayLength(1)];
+				buffer.get(b);
+				return new ByteArrayTag(b);
+			case IntArrayTag.ID:
+				int[] i = new int[readArrayLength(4)];
+				buffer.asIntBuffer().get(i);
+				buffer.position(buffer.position() + i.length * 4);
+				return new IntArrayTag(i);
+			case LongArrayTag.ID:
+				long[] l = new long[readArrayLength(8)];
+				buffer.asLongBuffer().get(l);
+				buffer.position(buffer.position() + l.length * 8);
+				return new LongArrayTag(l);
+			default:
+				throw new IOException("invalid tag type id " + typeId);
+		}
+	}
+
+	private ListTag<?> readListTag(int maxDepth) throws IOException {
+		byte typeId = buffer.get();
+		ListTag<?> list = ListTag.createUnchecked(typeClass(typeId));
+		int length = buffer.getInt();
+		for (int i = 0; i < length; i++) {
+			list.addUnchecked(read(typeId, decrementMaxDepth(maxDepth)));
+		}
+		return list;
+	}
+
+	private CompoundTag readCompoundTag(int maxDepth) throws IOException {
+		CompoundTag comp = new CompoundTag();
+		byte id;
+		while ((id = buffer.get()) != EndTag.ID) {
+			String key = readString(keyCache);
+			comp.put(key, read(id, decrementMaxDepth(maxDepth)));
+		}
+		return comp;
+	}
+
+	// checks the length against the remaining bytes before anything is allocated for it
+	private int readArrayLength(int elementSize) throws IOException {
+		int length = buffer.getInt();
+		if (length < 0) {
+			throw new NegativeArraySizeException(Integer.toString(length));
+		}
+		if ((long) length * elementSize > buffer.remaining()) {
+			throw new EOFException();
+		}
+		return length;
+	}
+
+	private String readString(StringCache cache) throws IOException {
+		int length = buffer.getShort() & 0xFFFF;
+		if (bytes.length < length) {
+			bytes = new byte[Math.max(length, bytes.length * 2)];
+			chars = new char[bytes.length];
+		}
+		buffer.get(bytes, 0, length);
+		return ModifiedUTF8.decode(bytes, length, chars, cache);
+	}
+
+	static Class<?> typeClass(byte typeId) {
+		switch (typeId) {
+			case ByteTag.ID:
+				return ByteTag.class;
+			case ShortTag.ID:
+				return ShortTag.class;
+			case IntTag.ID:
+				return IntTag.class;
+			case LongTag.ID:
+				return LongTag.class;
+			case FloatTag.ID:
+				return FloatTag.class;
+			case DoubleTag.ID:
+				return DoubleTag.class;
+			case StringTag.ID:
+				return StringTag.class;
+			case ListTag.ID:
+				return ListTag.class;
+			case CompoundTag.ID:
+				return CompoundTag.class;
+			case ByteArrayTag.ID:
+				return ByteArrayTag.class;
+			case IntArrayTag.ID:
+				return IntArrayTag.class;
+			case LongArrayTag.ID:
+				return LongArrayTag.class;
+			default:
+				return EndTag.class;
+		}
+	}
+}
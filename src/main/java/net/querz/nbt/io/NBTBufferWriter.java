@@ -0,0 +1,233 @@
+package net.querz.nbt.io;
+
+import net.querz.io.MaxDepthIO;
+import net.querz.nbt.tag.ByteArrayTag;
+import net.querz.nbt.tag.ByteTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.EndTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.IntArrayTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+/**
+ * Writes binary NBT data directly into a heap or direct {@link ByteBuffer} without the per-primitive
+ * overhead of a {@link java.io.DataOutputStream}. Int and long arrays are transferred in bulk.
+ * The bytes written are the same as those written by {@link NBTOutputStream}.
+ * */
+public final class NBTBufferWriter extends MaxDepthIO {
+
+	private ByteBuffer buffer;
+	private final boolean growable;
+	// scratch buffer for encoding strings, grown on demand
+	private byte[] bytes = new byte[64];
+
+	/**
+	 * Creates an NBTBufferWriter writing into {@code buffer}, starting at its position.
+	 * The buffer's byte order is set to big endian. If it is too small, a {@link BufferOverflowException} is thrown.
+	 * @param buffer The buffer to write into.
+	 * */
+	public NBTBufferWriter(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		growable = false;
+	}
+
+	/**
+	 * Creates an NBTBufferWriter writing into a heap buffer that grows as needed.
+	 * @param initialCapacity The initial capacity of the buffer.
+	 * @see NBTBufferWriter#getBuffer()
+	 * */
+	public NBTBufferWriter(int initialCapacity) {
+		buffer = ByteBuffer.allocate(initialCapacity);
+		growable = true;
+	}
+
+	/**
+	 * @return The buffer that is written into. Its position is the end of the data written so far.
+	 * If this writer grows its own buffer, a new buffer is returned after it has grown.
+	 * */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public void writeTag(NamedTag tag, int maxDepth) throws IOException {
+		ensureRemaining(1);
+		buffer.put(tag.getTag().getID());
+		if (tag.getTag().getID() != 0) {
+			String name = tag.getName();
+			writeString(name == null ? "" : name);
+		}
+		writeRawTag(tag.getTag(), maxDepth);
+	}
+
+	public void writeTag(Tag<?> tag, int maxDepth) throws IOException {
+		ensureRemaining(1);
+		buffer.put(tag.getID());
+		if (tag.getID() != 0) {
+			writeString("");
+		}
+		writeRawTag(tag, maxDepth);
+	}
+
+	public void writeRawTag(Tag<?> tag, int maxDepth) throws IOException {
+		switch (tag.getID()) {
+			case EndTag.ID:
+				break;
+			case ByteTag.ID:
+				ensureRemaining(1);
+				buffer.put(((ByteTag) tag).asByte());
+				break;
+			case ShortTag.ID:
+				ensureRemaining(2);
+				buffer.putShort(((ShortTag) tag).asShort());
+				break;
+			case IntTag.ID:
+				ensureRemaining(4);
+				buffer.putInt(((IntTag) tag).asInt());
+				break;
+			case LongTag.ID:
+				ensureRemaining(8);
+				buffer.putLong(((LongTag) tag).asLong());
+				break;
+			case FloatTag.ID:
+				ensureRemaining(4);
+				buffer.putFloat(((FloatTag) tag).asFloat());
+				break;
+			case DoubleTag.ID:
+				ensureRemaining(8);
+				buffer.putDouble(((DoubleTag) tag).asDouble());
+				break;
+			case StringTag.ID:
+				writeString(((StringTag) tag).getValue());
+				break;
+			case ListTag.ID:
+				writeListTag((ListTag<?>) tag, maxDepth);
+				break;
+			case CompoundTag.ID:
+				writeCompoundTag((CompoundTag) tag, maxDepth);
+				break;
+			case ByteArrayTag.ID:
+				byte[] b = ((ByteArrayTag) tag).getValue();
+				ensureRemaining(4 + b.length);
+				buffer.putInt(b.length);
+				buffer.put(b);
+				break;
+			case IntArrayTag.ID:
+				int[] i = ((IntArrayTag) tag).getValue();
+				ensureRemaining(4 + i.length * 4L);
+				buffer.putInt(i.length);
+				buffer.asIntBuffer().put(i);
+				buffer.position(buffer.position() + i.length * 4);
+				break;
+			case LongArrayTag.ID:
+				long[] l = ((LongArrayTag) tag).getValue();
+				ensureRemaining(4 + l.length * 8L);
+				buffer.putInt(l.length);
+				buffer.asLongBuffer().put(l);
+				buffer.position(buffer.position() + l.length * 8);
+				break;
+			default:
+				throw new IOException("invalid tag type id " + tag.getID());
+		}
+	}
+
+	private void writeListTag(ListTag<?> list, int maxDepth) throws IOException {
+		ensureRemaining(5);
+		buffer.put(idFromClass(list.getTypeClass()));
+		buffer.putInt(list.size());
+		for (Tag<?> t : list) {
+			writeRawTag(t, decrementMaxDepth(maxDepth));
+		}
+	}
+
+	private void writeCompoundTag(CompoundTag comp, int maxDepth) throws IOException {
+		for (Map.Entry<String, Tag<?>> entry : comp) {
+			Tag<?> t = entry.getValue();
+			if (t.getID() == 0) {
+				throw new IOException("end tag not allowed");
+			}
+			ensureRemaining(1);
+			buffer.put(t.getID());
+			writeString(entry.getKey());
+			writeRawTag(t, decrementMaxDepth(maxDepth));
+		}
+		ensureRemaining(1);
+		buffer.put((byte) 0);
+	}
+
+	private void writeString(String s) throws IOException {
+		int length = s.length();
+		if (length > ModifiedUTF8.MAX_LENGTH) {
+			throw new UTFDataFormatException("encoded string too long: more than 65535 bytes");
+		}
+		if (bytes.length < 2 + 3 * length) {
+			bytes = new byte[Math.max(2 + 3 * length, bytes.length * 2)];
+		}
+		int encoded = ModifiedUTF8.encode(s, bytes, 2);
+		bytes[0] = (byte) (encoded >>> 8);
+		bytes[1] = (byte) encoded;
+		ensureRemaining(encoded + 2);
+		buffer.put(bytes, 0, encoded + 2);
+	}
+
+	private void ensureRemaining(long n) {
+		if (buffer.remaining() >= n) {
+			return;
+		}
+		if (!growable) {
+			throw new BufferOverflowException();
+		}
+		long required = buffer.position() + n;
+		if (required > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError("required buffer size exceeds 2GiB");
+		}
+		int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(required, buffer.capacity() * 2L));
+		ByteBuffer grown = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+
+	private static byte idFromClass(Class<?> typeClass) {
+		if (typeClass == ByteTag.class) {
+			return ByteTag.ID;
+		} else if (typeClass == ShortTag.class) {
+			return ShortTag.ID;
+		} else if (typeClass == IntTag.class) {
+			return IntTag.ID;
+		} else if (typeClass == LongTag.class) {
+			return LongTag.ID;
+		} else if (typeClass == FloatTag.class) {
+			return FloatTag.ID;
+		} else if (typeClass == DoubleTag.class) {
+			return DoubleTag.ID;
+		} else if (typeClass == StringTag.class) {
+			return StringTag.ID;
+		} else if (typeClass == ListTag.class) {
+			return ListTag.ID;
+		} else if (typeClass == CompoundTag.class) {
+			return CompoundTag.ID;
+		} else if (typeClass == ByteArrayTag.class) {
+			return ByteArrayTag.ID;
+		} else if (typeClass == IntArrayTag.class) {
+			return IntArrayTag.ID;
+		} else if (typeClass == LongArrayTag.class) {
+			return LongArrayTag.ID;
+		} else if (typeClass == EndTag.class) {
+			return EndTag.ID;
+		}
+		throw new IllegalArgumentException("unknown Tag class " + typeClass.getName());
+	}
+}
@@ -1,6 +1,7 @@
 package net.querz.nbt.io;
 
 import net.querz.io.Deserializer;
+import net.querz.nbt.tag.PathFilter;
 import net.querz.nbt.tag.Tag;
 import java.io.IOException;
 import java.io.InputStream;
@@ -9,23 +10,49 @@ import java.util.zip.GZIPInputStream;
 public class NBTDeserializer extends Deserializer<NamedTag> {
 
 	private boolean compressed;
+	private PathFilter filter;
+	private StringCache keyCache;
+	private StringCache valueCache;
 
 	public NBTDeserializer() {
 		this(true);
 	}
 
 	public NBTDeserializer(boolean compressed) {
+		this(compressed, null);
+	}
+
+	/**
+	 * @param compressed Whether the data is gzip compressed.
+	 * @param filter The filter selecting the compound entries to read, or {@code null} to read everything.
+	 * @see PathFilter
+	 * */
+	public NBTDeserializer(boolean compressed, PathFilter filter) {
+		this(compressed, filter, null, null);
+	}
+
+	/**
+	 * @param compressed Whether the data is gzip compressed.
+	 * @param filter The filter selecting the compound entries to read, or {@code null} to read everything.
+	 * @param keyCache The cache deduplicating compound keys and tag names, or {@code null}.
+	 * @param valueCache The cache deduplicating the values of String tags, or {@code null}.
+	 * @see NBTInputStream#NBTInputStream(InputStream, StringCache, StringCache)
+	 * */
+	public NBTDeserializer(boolean compressed, PathFilter filter, StringCache keyCache, StringCache valueCache) {
 		this.compressed = compressed;
+		this.filter = filter;
+		this.keyCache = keyCache;
+		this.valueCache = valueCache;
 	}
 
 	@Override
 	public NamedTag fromStream(InputStream stream) throws IOException {
 		NBTInputStream nbtIn;
 		if (compressed) {
-			nbtIn = new NBTInputStream(new GZIPInputStream(stream));
+			nbtIn = new NBTInputStream(new GZIPInputStream(stream), keyCache, valueCache);
 		} else {
-			nbtIn = new NBTInputStream(stream);
+			nbtIn = new NBTInputStream(stream, keyCache, valueCache);
 		}
-		return nbtIn.readTag(Tag.DEFAULT_MAX_DEPTH);
+		return nbtIn.readTag(Tag.DEFAULT_MAX_DEPTH, filter);
 	}
 }
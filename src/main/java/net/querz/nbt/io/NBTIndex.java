@@ -0,0 +1,419 @@
+package net.querz.nbt.io;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.EndTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.PathFilter;
+import net.querz.nbt.tag.Tag;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Maps the paths of the tags in serialized, uncompressed NBT data to the position and length of their payloads,
+ * so that repeated queries against unchanged data can go straight to the bytes of a tag instead of parsing
+ * everything before it. An index is built with a single pass over the data and can be stored next to it
+ * with {@link NBTIndex#write(OutputStream)}.
+ *
+ * <p>Paths are the names of nested compound entries separated by dots, with the index of list elements in
+ * brackets, e.g. {@code "Level.Sections[3].BlockStates"}. The root tag has the empty path.
+ * Dots, brackets and backslashes in keys are escaped with a backslash, see {@link NBTIndex#escape(String)},
+ * so a key {@code a.b} has the path {@code a\.b} and does not collide with the entry {@code b} of a compound {@code a}.
+ * An empty key in the root compound has the path {@code "."}, so that it does not collide with the root tag.
+ * Elements of lists are only indexed if they are compounds or lists themselves,
+ * other elements are found directly with {@link NBTView#get(int)}.</p>
+ *
+ * <p>Offsets are relative to the first byte of the indexed data, which is the type id of the root tag.</p>
+ * */
+public final class NBTIndex {
+
+	private static final int MAGIC = 0x4E425449; // "NBTI"
+	private static final int VERSION = 1;
+
+	private final int dataLength;
+	// sorted by path for binary search
+	private final String[] paths;
+	private final byte[] ids;
+	private final int[] offsets;
+	private final int[] lengths;
+
+	private NBTIndex(int dataLength, String[] paths, byte[] ids, int[] offsets, int[] lengths) {
+		this.dataLength = dataLength;
+		this.paths = paths;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.lengths = lengths;
+	}
+
+	/**
+	 * Indexes all tags of the named tag at the position of {@code buffer}. The position of the buffer is not changed.
+	 * @param buffer The buffer containing uncompressed NBT data.
+	 * @return The index.
+	 * @throws IOException If the buffer does not contain a valid tag.
+	 * */
+	public static NBTIndex build(ByteBuffer buffer) throws IOException {
+		return build(buffer, null);
+	}
+
+	/**
+	 * Indexes the tags of the named tag at the position of {@code buffer} that are selected by {@code filter},
+	 * and their ancestors. The position of the buffer is not changed.
+	 * @param buffer The buffer containing uncompressed NBT data.
+	 * @param filter The filter selecting the compound entries to index, or {@code null} to index everything.
+	 * @return The index.
+	 * @throws IOException If the buffer does not contain a valid tag.
+	 * */
+	public static NBTIndex build(ByteBuffer buffer, PathFilter filter) throws IOException {
+		ByteBuffer data = buffer.duplicate();
+		int base = data.position();
+		NBTView root = NBTView.of(data);
+		Builder builder = new Builder(root, base);
+		builder.index("", root.offset(), root.getID(), filter);
+		return builder.build(data.position() - base);
+	}
+
+	public static NBTIndex build(byte[] data) throws IOException {
+		return build(ByteBuffer.wrap(data), null);
+	}
+
+	/**
+	 * Escapes a compound key to be used as a part of a path.
+	 * @param key The key.
+	 * @return The key with a backslash before every dot, bracket and backslash.
+	 * */
+	public static String escape(String key) {
+		int i = 0;
+		while (i < key.length() && !isSpecial(key.charAt(i))) {
+			i++;
+		}
+		if (i == key.length()) {
+			return key;
+		}
+		StringBuilder sb = new StringBuilder(key.length() + 8).append(key, 0, i);
+		for (; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (isSpecial(c)) {
+				sb.append('\\');
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static boolean isSpecial(char c) {
+		return c == '.' || c == '[' || c == ']' || c == '\\';
+	}
+
+	/**
+	 * @return The number of bytes of the indexed data, including the type id and name of the root tag.
+	 * */
+	public int getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * @return The number of indexed tags.
+	 * */
+	public int size() {
+		return paths.length;
+	}
+
+	/**
+	 * @return All indexed paths in lexicographical order.
+	 * */
+	public List<String> paths() {
+		return Collections.unmodifiableList(Arrays.asList(paths));
+	}
+
+	/**
+	 * @param path The path of a tag.
+	 * @return The index entry of the tag or {@code null} if the path has not been indexed.
+	 * */
+	public Entry get(String path) {
+		int i = Arrays.binarySearch(paths, path);
+		return i < 0 ? null : new Entry(paths[i], ids[i], offsets[i], lengths[i]);
+	}
+
+	/**
+	 * Creates a view of an indexed tag without scanning the data before it. Only the tag itself is validated.
+	 * @param data The indexed data, positioned at its first byte.
+	 * @param path The path of the tag.
+	 * @return The view of the tag or {@code null} if the path has not been indexed.
+	 * @throws IOException If {@code data} does not contain the tag at the indexed position,
+	 *                     which means that the index does not belong to the data.
+	 * */
+	public NBTView view(ByteBuffer data, String path) throws IOException {
+		Entry e = get(path);
+		if (e == null) {
+			return null;
+		}
+		return NBTView.of(data, data.position() + e.offset, e.id, e.length);
+	}
+
+	/**
+	 * Reads only the bytes of an indexed tag from a file containing the indexed data and creates the tag.
+	 * The position of the channel is not used or changed.
+	 * @param channel The FileChannel to read from.
+	 * @param position The file position of the first byte of the indexed data.
+	 * @param path The path of the tag.
+	 * @return The tag or {@code null} if the path has not been indexed.
+	 * @throws IOException If the file does not contain the tag at the indexed position.
+	 * */
+	public Tag<?> readTag(FileChannel channel, long position, String path) throws IOException {
+		Entry e = get(path);
+		if (e == null) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(e.length);
+		long filePosition = position + e.offset;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, filePosition + buffer.position());
+			if (read < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return NBTView.of(buffer, 0, e.id, e.length).toTag();
+	}
+
+	/**
+	 * Writes this index, e.g. to a sidecar file next to the indexed data.
+	 * Paths are front coded, so the shared prefixes of sorted paths are only stored once.
+	 * @param out The stream to write to.
+	 * @throws IOException If the index could not be written.
+	 * */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeByte(VERSION);
+		dos.writeInt(dataLength);
+		dos.writeInt(paths.length);
+		String previous = "";
+		for (int i = 0; i < paths.length; i++) {
+			int prefix = commonPrefix(previous, paths[i]);
+			dos.writeShort(prefix);
+			dos.writeUTF(paths[i].substring(prefix));
+			dos.writeByte(ids[i]);
+			dos.writeInt(offsets[i]);
+			dos.writeInt(lengths[i]);
+			previous = paths[i];
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Reads an index written by {@link NBTIndex#write(OutputStream)}.
+	 * @param in The stream to read from.
+	 * @return The index.
+	 * @throws IOException If the stream does not contain an index.
+	 * */
+	public static NBTIndex read(InputStream in) throws IOException {
+		DataInputStream dis = new DataInputStream(in);
+		if (dis.readInt() != MAGIC) {
+			throw new IOException("not an NBT index");
+		}
+		int version = dis.readByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported NBT index version " + version);
+		}
+		int dataLength = dis.readInt();
+		int size = dis.readInt();
+		if (size < 0) {
+			throw new IOException("invalid NBT index size " + size);
+		}
+		List<String> paths = new ArrayList<>();
+		byte[] ids = new byte[Math.min(size, 4096)];
+		int[] offsets = new int[ids.length];
+		int[] lengths = new int[ids.length];
+		String previous = "";
+		for (int i = 0; i < size; i++) {
+			int prefix = dis.readUnsignedShort();
+			if (prefix > previous.length()) {
+				throw new IOException("invalid NBT index path prefix " + prefix);
+			}
+			String path = previous.substring(0, prefix) + dis.readUTF();
+			if (i > 0 && path.compareTo(previous) <= 0) {
+				throw new IOException("NBT index paths are not sorted");
+			}
+			if (i == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+				offsets = Arrays.copyOf(offsets, ids.length);
+				lengths = Arrays.copyOf(lengths, ids.length);
+			}
+			paths.add(path);
+			ids[i] = dis.readByte();
+			offsets[i] = dis.readInt();
+			lengths[i] = dis.readInt();
+			if (offsets[i] < 0 || lengths[i] < 0 || (long) offsets[i] + lengths[i] > dataLength) {
+				throw new IOException("invalid NBT index entry " + path);
+			}
+			previous = path;
+		}
+		return new NBTIndex(dataLength, paths.toArray(new String[size]),
+				Arrays.copyOf(ids, size), Arrays.copyOf(offsets, size), Arrays.copyOf(lengths, size));
+	}
+
+	private static int commonPrefix(String a, String b) {
+		int max = Math.min(Math.min(a.length(), b.length()), 0xFFFF);
+		int i = 0;
+		while (i < max && a.charAt(i) == b.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * The position and length of the payload of an indexed tag.
+	 * */
+	public static final class Entry {
+
+		private final String path;
+		private final byte id;
+		private final int offset;
+		private final int length;
+
+		private Entry(String path, byte id, int offset, int length) {
+			this.path = path;
+			this.id = id;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return The type id of the tag.
+		 * */
+		public byte getID() {
+			return id;
+		}
+
+		/**
+		 * @return The position of the payload of the tag relative to the first byte of the indexed data.
+		 * */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return The length of the payload of the tag in bytes.
+		 * */
+		public int getLength() {
+			return length;
+		}
+
+		@Override
+		public String toString() {
+			return path + "@" + offset + "+" + length;
+		}
+	}
+
+	private static final class Builder {
+
+		private final NBTView root;
+		private final ByteBuffer buffer;
+		private final int base;
+		private final List<String> paths = new ArrayList<>();
+		private byte[] ids = new byte[64];
+		private int[] offsets = new int[64];
+		private int[] lengths = new int[64];
+
+		Builder(NBTView root, int base) {
+			this.root = root;
+			this.buffer = root.buffer();
+			this.base = base;
+		}
+
+		// returns the end of the payload at position
+		int index(String path, int position, byte id, PathFilter filter) {
+			int entry = add(path, id, position);
+			int end;
+			if (id == CompoundTag.ID) {
+				end = position;
+				byte type;
+				while ((type = buffer.get(end)) != EndTag.ID) {
+					int keyLength = buffer.getShort(end + 1) & 0xFFFF;
+					String key = root.decode(end + 3, keyLength);
+					end += 3 + keyLength;
+					PathFilter child = filter == null ? null : filter.getChild(key);
+					if (filter != null && child == null) {
+						end = root.skip(end, type);
+					} else {
+						String name = escape(key);
+						end = index(path.isEmpty() && !name.isEmpty() ? name : path + "." + name, end, type, child);
+					}
+				}
+				end++;
+			} else if (id == ListTag.ID && (buffer.get(position) == CompoundTag.ID || buffer.get(position) == ListTag.ID)) {
+				byte type = buffer.get(position);
+				int size = buffer.getInt(position + 1);
+				end = position + 5;
+				for (int i = 0; i < size; i++) {
+					end = index(path + "[" + i + "]", end, type, filter);
+				}
+			} else {
+				end = root.skip(position, id);
+			}
+			lengths[entry] = end - position;
+			return end;
+		}
+
+		private int add(String path, byte id, int position) {
+			int entry = paths.size();
+			if (entry == ids.length) {
+				ids = Arrays.copyOf(ids, entry * 2);
+				offsets = Arrays.copyOf(offsets, entry * 2);
+				lengths = Arrays.copyOf(lengths, entry * 2);
+			}
+			paths.add(path);
+			ids[entry] = id;
+			offsets[entry] = position - base;
+			return entry;
+		}
+
+		NBTIndex build(int dataLength) {
+			final String[] unsorted = paths.toArray(new String[paths.size()]);
+			Integer[] order = new Integer[unsorted.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return unsorted[a].compareTo(unsorted[b]);
+				}
+			});
+			String[] sortedPaths = new String[order.length];
+			byte[] sortedIds = new byte[order.length];
+			int[] sortedOffsets = new int[order.length];
+			int[] sortedLengths = new int[order.length];
+			int size = 0;
+			for (int i = 0; i < order.length; i++) {
+				int j = order[i];
+				// keys are escaped, so only a key repeated in the same compound causes a duplicate path.
+				// the sort is stable, so of duplicate keys the last one wins like in a CompoundTag
+				if (i + 1 < order.length && unsorted[order[i + 1]].equals(unsorted[j])) {
+					continue;
+				}
+				sortedPaths[size] = unsorted[j];
+				sortedIds[size] = ids[j];
+				sortedOffsets[size] = offsets[j];
+				sortedLengths[size++] = lengths[j];
+			}
+			return new NBTIndex(dataLength, Arrays.copyOf(sortedPaths, size), Arrays.copyOf(sortedIds, size),
+					Arrays.copyOf(sortedOffsets, size), Arrays.copyOf(sortedLengths, size));
+		}
+	}
+}
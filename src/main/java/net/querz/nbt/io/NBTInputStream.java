@@ -11,7 +11,9 @@ import net.querz.nbt.tag.IntTag;
 import net.querz.nbt.tag.ListTag;
 import net.querz.nbt.tag.LongArrayTag;
 import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.PathFilter;
 import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringInput;
 import net.querz.nbt.tag.StringTag;
 import net.querz.nbt.tag.Tag;
 import java.io.DataInputStream;
@@ -20,18 +22,117 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
-public class NBTInputStream extends DataInputStream {
+public class NBTInputStream extends DataInputStream implements StringInput {
+
+	private final StringCache keyCache;
+	private final StringCache valueCache;
+	// scratch buffers for decoding strings, grown on demand
+	private byte[] bytes = new byte[64];
+	private char[] chars = new char[64];
+
 	public NBTInputStream(InputStream in) {
+		this(in, null, null);
+	}
+
+	/**
+	 * Creates an NBTInputStream deduplicating the strings it reads.
+	 * @param in The stream to read from.
+	 * @param keyCache The cache for compound keys and tag names, or {@code null} to not deduplicate them.
+	 * @param valueCache The cache for the values of String tags, or {@code null} to not deduplicate them.
+	 *                   May be the same as {@code keyCache}.
+	 * */
+	public NBTInputStream(InputStream in, StringCache keyCache, StringCache valueCache) {
 		super(in);
+		this.keyCache = keyCache;
+		this.valueCache = valueCache;
 	}
 
 	public NamedTag readTag(int maxDepth) throws IOException {
 		byte id = readByte();
-		return new NamedTag(readUTF(), Tag.read(id, this, maxDepth));
+		return new NamedTag(readKey(), Tag.read(id, this, maxDepth));
 	}
 
 	public Tag<?> readRawTag(int maxDepth) throws IOException {
 		byte id = readByte();
 		return Tag.read(id, this, maxDepth);
 	}
+
+	/**
+	 * Reads a named tag, creating only the parts selected by {@code filter}.
+	 * @param maxDepth The maximum nesting depth.
+	 * @param filter The filter selecting the compound entries to read, or {@code null} to read everything.
+	 * @return The named tag that has been read.
+	 * @throws IOException If the stream does not contain valid NBT data.
+	 * @see PathFilter
+	 * */
+	public NamedTag readTag(int maxDepth, PathFilter filter) throws IOException {
+		byte id = readByte();
+		return new NamedTag(readKey(), Tag.read(id, this, maxDepth, filter));
+	}
+
+	/**
+	 * Reads an unnamed tag, creating only the parts selected by {@code filter}.
+	 * @param maxDepth The maximum nesting depth.
+	 * @param filter The filter selecting the compound entries to read, or {@code null} to read everything.
+	 * @return The tag that has been read.
+	 * @throws IOException If the stream does not contain valid NBT data.
+	 * @see PathFilter
+	 * */
+	public Tag<?> readRawTag(int maxDepth, PathFilter filter) throws IOException {
+		byte id = readByte();
+		return Tag.read(id, this, maxDepth, filter);
+	}
+
+	/**
+	 * Reads a named tag and reports its name and contents to {@code visitor}
+	 * without creating a Tag tree.
+	 * @param visitor The visitor receiving the events.
+	 * @param maxDepth The maximum nesting depth.
+	 * @throws IOException If the stream does not contain valid NBT data.
+	 * */
+	public void readTag(NBTVisitor visitor, int maxDepth) throws IOException {
+		byte id = readByte();
+		String name = readKey();
+		if (visitor.visitKey(id, name)) {
+			new NBTVisitorReader(this, visitor).read(id, maxDepth);
+		} else {
+			Tag.skip(id, this, maxDepth);
+		}
+	}
+
+	/**
+	 * Reads an unnamed tag and reports its contents to {@code visitor}
+	 * without creating a Tag tree.
+	 * @param visitor The visitor receiving the events.
+	 * @param maxDepth The maximum nesting depth.
+	 * @throws IOException If the stream does not contain valid NBT data.
+	 * */
+	public void readRawTag(NBTVisitor visitor, int maxDepth) throws IOException {
+		byte id = readByte();
+		new NBTVisitorReader(this, visitor).read(id, maxDepth);
+	}
+
+	@Override
+	public String readKey() throws IOException {
+		return readModifiedUTF8(keyCache);
+	}
+
+	@Override
+	public String readString() throws IOException {
+		return readModifiedUTF8(valueCache);
+	}
+
+	/**
+	 * Reads a string like {@link DataInputStream#readUTF()}, but into reused buffers.
+	 * @see ModifiedUTF8#decode(byte[], int, char[], StringCache)
+	 * */
+	private String readModifiedUTF8(StringCache cache) throws IOException {
+		int length = readUnsignedShort();
+		if (bytes.length < length) {
+			bytes = new byte[Math.max(length, bytes.length * 2)];
+			chars = new char[bytes.length];
+		}
+		readFully(bytes, 0, length);
+		return ModifiedUTF8.decode(bytes, length, chars, cache);
+	}
 }
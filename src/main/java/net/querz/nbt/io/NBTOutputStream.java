@@ -12,15 +12,21 @@ import net.querz.nbt.tag.ListTag;
 import net.querz.nbt.tag.LongArrayTag;
 import net.querz.nbt.tag.LongTag;
 import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringOutput;
 import net.querz.nbt.tag.StringTag;
 import net.querz.nbt.tag.Tag;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UTFDataFormatException;
 import java.util.HashMap;
 import java.util.Map;
 
-public class NBTOutputStream extends DataOutputStream {
+public class NBTOutputStream extends DataOutputStream implements StringOutput {
+
+	// scratch buffer for encoding strings, grown on demand
+	private byte[] bytes = new byte[66];
+
 	public NBTOutputStream(OutputStream out) {
 		super(out);
 	}
@@ -29,7 +35,7 @@ public class NBTOutputStream extends DataOutputStream {
 		writeByte(tag.getTag().getID());
 		if (tag.getTag().getID() != 0) {
 			String name = tag.getName();
-			writeUTF(name == null ? "" : name);
+			writeString(name == null ? "" : name);
 		}
 		writeRawTag(tag.getTag(), maxDepth);
 	}
@@ -37,7 +43,7 @@ public class NBTOutputStream extends DataOutputStream {
 	public void writeTag(Tag<?> tag, int maxDepth) throws IOException {
 		writeByte(tag.getID());
 		if (tag.getID() != 0) {
-			writeUTF("");
+			writeString("");
 		}
 		writeRawTag(tag, maxDepth);
 	}
@@ -45,4 +51,24 @@ public class NBTOutputStream extends DataOutputStream {
 	public void writeRawTag(Tag<?> tag, int maxDepth) throws IOException {
 		tag.write(this, maxDepth);
 	}
+
+	/**
+	 * Writes a string like {@link DataOutputStream#writeUTF(String)}, but encodes it into a reused buffer
+	 * and passes it to the underlying stream with a single write.
+	 * */
+	@Override
+	public void writeString(String s) throws IOException {
+		int length = s.length();
+		if (length > 65535) {
+			throw new UTFDataFormatException("encoded string too long: more than 65535 bytes");
+		}
+		if (bytes.length < 2 + 3 * length) {
+			bytes = new byte[Math.max(2 + 3 * length, bytes.length * 2)];
+		}
+		byte[] b = bytes;
+		int encoded = ModifiedUTF8.encode(s, b, 2);
+		b[0] = (byte) (encoded >>> 8);
+		b[1] = (byte) encoded;
+		write(b, 0, encoded + 2);
+	}
 }
@@ -1,6 +1,7 @@
 package net.querz.nbt.io;
 
 import net.querz.nbt.tag.Tag;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -67,6 +68,23 @@ public final class NBTUtil {
 		return read(new File(file));
 	}
 
+	/**
+	 * Reads a file and reports its contents to {@code visitor} without creating a Tag tree.
+	 * Compression is detected automatically.
+	 * @param file The file to read.
+	 * @param visitor The visitor receiving the events.
+	 * @throws IOException If the file could not be read or does not contain valid NBT data.
+	 * */
+	public static void read(File file, NBTVisitor visitor) throws IOException {
+		try (FileInputStream fis = new FileInputStream(file)) {
+			new NBTInputStream(new BufferedInputStream(detectDecompression(fis))).readTag(visitor, Tag.DEFAULT_MAX_DEPTH);
+		}
+	}
+
+	public static void read(String file, NBTVisitor visitor) throws IOException {
+		read(new File(file), visitor);
+	}
+
 	private static InputStream detectDecompression(InputStream is) throws IOException {
 		PushbackInputStream pbis = new PushbackInputStream(is, 2);
 		int signature = (pbis.read() & 0xFF) + (pbis.read() << 8);
@@ -0,0 +1,643 @@
+package net.querz.nbt.io;
+
+import net.querz.io.MaxDepthReachedException;
+import net.querz.nbt.tag.ByteArrayTag;
+import net.querz.nbt.tag.ByteTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.EndTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.IntArrayTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.PathFilter;
+import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A read-only view of binary NBT data in a {@link ByteBuffer} that does not create any tags.
+ * Compound entries are looked up by scanning the keys in place, list elements by skipping the elements
+ * before them, and arrays are exposed as read-only slices of the buffer or copied on request.
+ * A view can be promoted to a {@link Tag} with {@link NBTView#toTag()}, optionally creating only the
+ * parts selected by a {@link PathFilter}.
+ *
+ * <p>The structure of the data is validated once when the root view is created, so navigating a view
+ * does not throw exceptions for malformed data, except for strings that are not valid modified UTF-8.
+ * Methods expecting a different type than that of the view throw a {@link ClassCastException},
+ * like the typed getters of {@link CompoundTag}.</p>
+ *
+ * <p>Views never copy or modify the underlying buffer, so its content must not change while they are used.
+ * Views are immutable and may be shared between threads.</p>
+ * */
+public final class NBTView {
+
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final byte id;
+
+	private NBTView(ByteBuffer buffer, int offset, byte id) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.id = id;
+	}
+
+	/**
+	 * Creates a view of the named tag at the position of {@code buffer} and advances its position past the tag.
+	 * The name of the tag is ignored.
+	 * @param buffer The buffer containing uncompressed NBT data.
+	 * @return The view of the tag.
+	 * @throws IOException If the buffer does not contain a valid tag.
+	 * @throws MaxDepthReachedException If the tag is nested deeper than {@link Tag#DEFAULT_MAX_DEPTH}.
+	 * */
+	public static NBTView of(ByteBuffer buffer) throws IOException {
+		ByteBuffer data = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		int position = data.position();
+		if (data.remaining() < 1) {
+			throw new EOFException();
+		}
+		byte id = data.get(position++);
+		if (id != EndTag.ID) {
+			if (data.limit() - position < 2) {
+				throw new EOFException();
+			}
+			position += 2 + (data.getShort(position) & 0xFFFF);
+		}
+		NBTView view = new NBTView(data, position, id);
+		buffer.position(view.end(position, id, Tag.DEFAULT_MAX_DEPTH));
+		return view;
+	}
+
+	/**
+	 * Creates a view of an unnamed tag at a known position, validating only that tag.
+	 * @param buffer The buffer containing the tag.
+	 * @param offset The absolute position of the payload of the tag in {@code buffer}.
+	 * @param id The type id of the tag.
+	 * @param length The length of the payload.
+	 * @return The view of the tag.
+	 * @throws IOException If the bytes at {@code offset} are not a valid tag of the given type and length.
+	 * */
+	static NBTView of(ByteBuffer buffer, int offset, byte id, int length) throws IOException {
+		ByteBuffer data = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		if (offset < 0 || (long) offset + length > data.limit()) {
+			throw new EOFException();
+		}
+		NBTView view = new NBTView(data, offset, id);
+		if (view.end(offset, id, Tag.DEFAULT_MAX_DEPTH) != offset + length) {
+			throw new IOException("tag at " + offset + " does not have a length of " + length);
+		}
+		return view;
+	}
+
+	/**
+	 * Creates a view of the named tag at the beginning of {@code data}.
+	 * @param data The uncompressed NBT data.
+	 * @return The view of the tag.
+	 * @throws IOException If {@code data} does not contain a valid tag.
+	 * @see NBTView#of(ByteBuffer)
+	 * */
+	public static NBTView of(byte[] data) throws IOException {
+		return of(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * @return The type id of the viewed tag.
+	 * */
+	public byte getID() {
+		return id;
+	}
+
+	/**
+	 * Creates the tag this view shows.
+	 * @return A new mutable tag.
+	 * */
+	public Tag<?> toTag() {
+		return toTag(null);
+	}
+
+	/**
+	 * Creates the parts of the tag this view shows that are selected by {@code filter}.
+	 * @param filter The filter selecting the compound entries to create, or {@code null} to create everything.
+	 * @return A new mutable tag.
+	 * @see NBTInputStream#readRawTag(int, PathFilter)
+	 * */
+	public Tag<?> toTag(PathFilter filter) {
+		if (filter == null || filter.isComplete() || id != CompoundTag.ID && id != ListTag.ID) {
+			ByteBuffer data = buffer.duplicate();
+			data.position(offset);
+			try {
+				return new NBTBufferReader(data).read(id, Tag.DEFAULT_MAX_DEPTH);
+			} catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+		if (id == ListTag.ID) {
+			int size = size();
+			byte type = getElementID();
+			ListTag<?> list = ListTag.createUnchecked(NBTBufferReader.typeClass(type));
+			for (int i = 0, position = offset + 5; i < size; i++) {
+				list.addUnchecked(new NBTView(buffer, position, type).toTag(filter));
+				position = skip(position, type);
+			}
+			return list;
+		}
+		CompoundTag comp = new CompoundTag();
+		for (int position = offset; buffer.get(position) != EndTag.ID;) {
+			byte type = buffer.get(position);
+			int keyLength = buffer.getShort(position + 1) & 0xFFFF;
+			String key = decode(position + 3, keyLength);
+			position += 3 + keyLength;
+			PathFilter child = filter.getChild(key);
+			if (child != null) {
+				comp.put(key, new NBTView(buffer, position, type).toTag(child));
+			}
+			position = skip(position, type);
+		}
+		return comp;
+	}
+
+	// compound
+
+	/**
+	 * Looks up a compound entry without decoding any keys.
+	 * @param key The name of the entry.
+	 * @return The view of the entry or {@code null} if there is no such entry.
+	 * @throws ClassCastException If this is not a view of a CompoundTag.
+	 * */
+	public NBTView get(String key) {
+		expect(CompoundTag.ID);
+		byte[] bytes = encode(key);
+		for (int position = offset; buffer.get(position) != EndTag.ID;) {
+			byte type = buffer.get(position);
+			int keyLength = buffer.getShort(position + 1) & 0xFFFF;
+			position += 3;
+			boolean match = keyLength == bytes.length;
+			for (int i = 0; match && i < keyLength; i++) {
+				match = buffer.get(position + i) == bytes[i];
+			}
+			position += keyLength;
+			if (match) {
+				return new NBTView(buffer, position, type);
+			}
+			position = skip(position, type);
+		}
+		return null;
+	}
+
+	/**
+	 * @param key The name of the entry.
+	 * @return Whether the viewed CompoundTag contains an entry called {@code key}.
+	 * @throws ClassCastException If this is not a view of a CompoundTag.
+	 * */
+	public boolean containsKey(String key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * @return The keys of the viewed CompoundTag in the order they are stored in.
+	 * @throws ClassCastException If this is not a view of a CompoundTag.
+	 * */
+	public List<String> keys() {
+		expect(CompoundTag.ID);
+		List<String> keys = new ArrayList<>();
+		for (int position = offset; buffer.get(position) != EndTag.ID;) {
+			byte type = buffer.get(position);
+			int keyLength = buffer.getShort(position + 1) & 0xFFFF;
+			keys.add(decode(position + 3, keyLength));
+			position = skip(position + 3 + keyLength, type);
+		}
+		return keys;
+	}
+
+	public byte getByte(String key) {
+		NBTView v = get(key, ByteTag.ID);
+		return v == null ? ByteTag.ZERO_VALUE : v.asByte();
+	}
+
+	public short getShort(String key) {
+		NBTView v = get(key, ShortTag.ID);
+		return v == null ? ShortTag.ZERO_VALUE : v.asShort();
+	}
+
+	public int getInt(String key) {
+		NBTView v = get(key, IntTag.ID);
+		return v == null ? IntTag.ZERO_VALUE : v.asInt();
+	}
+
+	public long getLong(String key) {
+		NBTView v = get(key, LongTag.ID);
+		return v == null ? LongTag.ZERO_VALUE : v.asLong();
+	}
+
+	public float getFloat(String key) {
+		NBTView v = get(key, FloatTag.ID);
+		return v == null ? FloatTag.ZERO_VALUE : v.asFloat();
+	}
+
+	public double getDouble(String key) {
+		NBTView v = get(key, DoubleTag.ID);
+		return v == null ? DoubleTag.ZERO_VALUE : v.asDouble();
+	}
+
+	public String getString(String key) {
+		NBTView v = get(key, StringTag.ID);
+		return v == null ? StringTag.ZERO_VALUE : v.asString();
+	}
+
+	public byte[] getByteArray(String key) {
+		NBTView v = get(key, ByteArrayTag.ID);
+		return v == null ? ByteArrayTag.ZERO_VALUE : v.toByteArray();
+	}
+
+	public int[] getIntArray(String key) {
+		NBTView v = get(key, IntArrayTag.ID);
+		return v == null ? IntArrayTag.ZERO_VALUE : v.toIntArray();
+	}
+
+	public long[] getLongArray(String key) {
+		NBTView v = get(key, LongArrayTag.ID);
+		return v == null ? LongArrayTag.ZERO_VALUE : v.toLongArray();
+	}
+
+	private NBTView get(String key, byte type) {
+		NBTView v = get(key);
+		if (v != null) {
+			v.expect(type);
+		}
+		return v;
+	}
+
+	// list
+
+	/**
+	 * @return The number of elements of the viewed ListTag.
+	 * @throws ClassCastException If this is not a view of a ListTag.
+	 * */
+	public int size() {
+		expect(ListTag.ID);
+		return Math.max(0, buffer.getInt(offset + 1));
+	}
+
+	/**
+	 * @return The type id of the elements of the viewed ListTag.
+	 * @throws ClassCastException If this is not a view of a ListTag.
+	 * */
+	public byte getElementID() {
+		expect(ListTag.ID);
+		return buffer.get(offset);
+	}
+
+	/**
+	 * Returns a view of a list element. Elements of a fixed size are found directly,
+	 * all others by skipping the elements before them.
+	 * @param index The index of the element.
+	 * @return The view of the element.
+	 * @throws ClassCastException If this is not a view of a ListTag.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of range.
+	 * */
+	public NBTView get(int index) {
+		int size = size();
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+		byte type = getElementID();
+		int position = offset + 5;
+		int fixedSize = fixedSize(type);
+		if (fixedSize > 0) {
+			position += fixedSize * index;
+		} else {
+			for (int i = 0; i < index; i++) {
+				position = skip(position, type);
+			}
+		}
+		return new NBTView(buffer, position, type);
+	}
+
+	// values
+
+	// floating point values are cast directly like FloatTag and DoubleTag do,
+	// narrowing them through a long would give different results outside of the int range
+	public byte asByte() {
+		switch (id) {
+			case FloatTag.ID:
+				return (byte) buffer.getFloat(offset);
+			case DoubleTag.ID:
+				return (byte) buffer.getDouble(offset);
+			default:
+				return (byte) asLong();
+		}
+	}
+
+	public short asShort() {
+		switch (id) {
+			case FloatTag.ID:
+				return (short) buffer.getFloat(offset);
+			case DoubleTag.ID:
+				return (short) buffer.getDouble(offset);
+			default:
+				return (short) asLong();
+		}
+	}
+
+	public int asInt() {
+		switch (id) {
+			case FloatTag.ID:
+				return (int) buffer.getFloat(offset);
+			case DoubleTag.ID:
+				return (int) buffer.getDouble(offset);
+			default:
+				return (int) asLong();
+		}
+	}
+
+	/**
+	 * Reads the value of a viewed ByteTag, ShortTag, IntTag, LongTag, FloatTag or DoubleTag,
+	 * converting it like {@link net.querz.nbt.tag.NumberTag#asLong()}.
+	 * @return The value as a long.
+	 * @throws ClassCastException If this is not a view of a number.
+	 * */
+	public long asLong() {
+		switch (id) {
+			case ByteTag.ID:
+				return buffer.get(offset);
+			case ShortTag.ID:
+				return buffer.getShort(offset);
+			case IntTag.ID:
+				return buffer.getInt(offset);
+			case LongTag.ID:
+				return buffer.getLong(offset);
+			case FloatTag.ID:
+				return (long) buffer.getFloat(offset);
+			case DoubleTag.ID:
+				return (long) buffer.getDouble(offset);
+			default:
+				throw new ClassCastException("not a number: type id " + id);
+		}
+	}
+
+	public float asFloat() {
+		return id == FloatTag.ID ? buffer.getFloat(offset) : (float) asDouble();
+	}
+
+	public double asDouble() {
+		switch (id) {
+			case FloatTag.ID:
+				return buffer.getFloat(offset);
+			case DoubleTag.ID:
+				return buffer.getDouble(offset);
+			default:
+				return asLong();
+		}
+	}
+
+	/**
+	 * @return The value of the viewed StringTag.
+	 * @throws ClassCastException If this is not a view of a StringTag.
+	 * @throws IllegalStateException If the string is not valid modified UTF-8.
+	 * */
+	public String asString() {
+		expect(StringTag.ID);
+		return decode(offset + 2, buffer.getShort(offset) & 0xFFFF);
+	}
+
+	// arrays
+
+	/**
+	 * @return The number of elements of the viewed ByteArrayTag, IntArrayTag or LongArrayTag.
+	 * @throws ClassCastException If this is not a view of an array.
+	 * */
+	public int length() {
+		if (id != ByteArrayTag.ID && id != IntArrayTag.ID && id != LongArrayTag.ID) {
+			throw new ClassCastException("not an array: type id " + id);
+		}
+		return buffer.getInt(offset);
+	}
+
+	/**
+	 * @return A read-only slice of the buffer containing the bytes of the viewed ByteArrayTag.
+	 * @throws ClassCastException If this is not a view of a ByteArrayTag.
+	 * */
+	public ByteBuffer asByteBuffer() {
+		expect(ByteArrayTag.ID);
+		return slice(length());
+	}
+
+	/**
+	 * @return A read-only big endian view of the ints of the viewed IntArrayTag.
+	 * @throws ClassCastException If this is not a view of an IntArrayTag.
+	 * */
+	public IntBuffer asIntBuffer() {
+		expect(IntArrayTag.ID);
+		return slice(length() * 4).asIntBuffer();
+	}
+
+	/**
+	 * @return A read-only big endian view of the longs of the viewed LongArrayTag.
+	 * @throws ClassCastException If this is not a view of a LongArrayTag.
+	 * */
+	public LongBuffer asLongBuffer() {
+		expect(LongArrayTag.ID);
+		return slice(length() * 8).asLongBuffer();
+	}
+
+	public byte[] toByteArray() {
+		ByteBuffer b = asByteBuffer();
+		byte[] a = new byte[b.remaining()];
+		b.get(a);
+		return a;
+	}
+
+	public int[] toIntArray() {
+		IntBuffer b = asIntBuffer();
+		int[] a = new int[b.remaining()];
+		b.get(a);
+		return a;
+	}
+
+	public long[] toLongArray() {
+		LongBuffer b = asLongBuffer();
+		long[] a = new long[b.remaining()];
+		b.get(a);
+		return a;
+	}
+
+	@Override
+	public String toString() {
+		return toTag().toString();
+	}
+
+	private ByteBuffer slice(int length) {
+		ByteBuffer data = buffer.asReadOnlyBuffer();
+		data.position(offset + 4);
+		data.limit(offset + 4 + length);
+		return data.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private void expect(byte type) {
+		if (id != type) {
+			throw new ClassCastException("expected type id " + type + ", but was " + id);
+		}
+	}
+
+	ByteBuffer buffer() {
+		return buffer;
+	}
+
+	int offset() {
+		return offset;
+	}
+
+	String decode(int position, int length) {
+		ByteBuffer data = buffer.duplicate();
+		data.position(position);
+		byte[] bytes = new byte[length];
+		data.get(bytes);
+		try {
+			return ModifiedUTF8.decode(bytes, length, new char[length], null);
+		} catch (UTFDataFormatException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static byte[] encode(String s) {
+		byte[] bytes = new byte[3 * s.length()];
+		try {
+			int length = ModifiedUTF8.encode(s, bytes, 0);
+			return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+		} catch (UTFDataFormatException ex) {
+			// no key in the data can be this long
+			return new byte[ModifiedUTF8.MAX_LENGTH + 1];
+		}
+	}
+
+	// the data has been validated by end() when the root view was created
+	int skip(int position, byte type) {
+		try {
+			return end(position, type, Tag.DEFAULT_MAX_DEPTH);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Returns the end of the payload of a tag and checks that it is within the buffer and well-formed.
+	 * */
+	private int end(int position, byte type, int maxDepth) throws IOException {
+		long end;
+		switch (type) {
+			case EndTag.ID:
+				return position;
+			case ByteTag.ID:
+			case ShortTag.ID:
+			case IntTag.ID:
+			case LongTag.ID:
+			case FloatTag.ID:
+			case DoubleTag.ID:
+				end = (long) position + fixedSize(type);
+				break;
+			case StringTag.ID:
+				end = (long) position + 2 + (getShort(position) & 0xFFFF);
+				break;
+			case ByteArrayTag.ID:
+				end = (long) position + 4 + arrayLength(position);
+				break;
+			case IntArrayTag.ID:
+				end = (long) position + 4 + 4L * arrayLength(position);
+				break;
+			case LongArrayTag.ID:
+				end = (long) position + 4 + 8L * arrayLength(position);
+				break;
+			case ListTag.ID:
+				byte elementType = getByte(position);
+				int size = getInt(position + 1);
+				position += 5;
+				int fixedSize = fixedSize(elementType);
+				if (size > 0 && fixedSize > 0) {
+					end = (long) position + (long) fixedSize * size;
+					break;
+				}
+				for (int i = 0; i < size; i++) {
+					position = end(position, elementType, decrementMaxDepth(maxDepth));
+				}
+				return position;
+			case CompoundTag.ID:
+				byte entryType;
+				while ((entryType = getByte(position)) != EndTag.ID) {
+					position = end(position + 1, StringTag.ID, maxDepth);
+					position = end(position, entryType, decrementMaxDepth(maxDepth));
+				}
+				return position + 1;
+			default:
+				throw new IOException("invalid tag type id " + type);
+		}
+		if (end > buffer.limit()) {
+			throw new EOFException();
+		}
+		return (int) end;
+	}
+
+	private byte getByte(int position) throws EOFException {
+		if (position + 1 > buffer.limit()) {
+			throw new EOFException();
+		}
+		return buffer.get(position);
+	}
+
+	private short getShort(int position) throws EOFException {
+		if (position + 2 > buffer.limit()) {
+			throw new EOFException();
+		}
+		return buffer.getShort(position);
+	}
+
+	private int getInt(int position) throws EOFException {
+		if (position + 4 > buffer.limit()) {
+			throw new EOFException();
+		}
+		return buffer.getInt(position);
+	}
+
+	private int arrayLength(int position) throws IOException {
+		int length = getInt(position);
+		if (length < 0) {
+			throw new IOException("negative array length " + length);
+		}
+		return length;
+	}
+
+	private static int decrementMaxDepth(int maxDepth) {
+		if (maxDepth == 0) {
+			throw new MaxDepthReachedException("reached maximum depth of NBT structure");
+		}
+		return maxDepth - 1;
+	}
+
+	private static int fixedSize(byte type) {
+		switch (type) {
+			case ByteTag.ID:
+				return 1;
+			case ShortTag.ID:
+				return 2;
+			case IntTag.ID:
+			case FloatTag.ID:
+				return 4;
+			case LongTag.ID:
+			case DoubleTag.ID:
+				return 8;
+			default:
+				return 0;
+		}
+	}
+}
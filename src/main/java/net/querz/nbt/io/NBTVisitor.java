@@ -0,0 +1,78 @@
+package net.querz.nbt.io;
+
+/**
+ * Receives the contents of an NBT structure as a sequence of events while it is being read,
+ * without creating any {@link net.querz.nbt.tag.Tag} instances.
+ *
+ * <p>Every method has an empty default implementation, so implementations only need to override
+ * the events they are interested in. The methods returning a {@code boolean} allow skipping
+ * a value or the contents of a compound or list. Skipped data is consumed from the stream
+ * without allocating anything for it.</p>
+ *
+ * <p>For every entry of a compound, {@link #visitKey(byte, String)} is called first, followed by the
+ * events of the value unless it has been skipped. The name of the root tag is reported through
+ * {@link #visitKey(byte, String)} as well when it is read with {@link NBTInputStream#readTag(NBTVisitor, int)}.
+ * Elements of a list are reported without a preceding key.</p>
+ * */
+public abstract class NBTVisitor {
+
+	/**
+	 * Called before the value of a named tag is read.
+	 * @param typeId The type id of the value.
+	 * @param key The name of the value.
+	 * @return {@code false} to skip the value.
+	 * */
+	public boolean visitKey(byte typeId, String key) {
+		return true;
+	}
+
+	/**
+	 * Called at the start of a compound.
+	 * @return {@code false} to skip all entries of this compound. {@link #endCompound()}
+	 *         will not be called in this case.
+	 * */
+	public boolean startCompound() {
+		return true;
+	}
+
+	/**
+	 * Called after the last entry of a compound has been read.
+	 * */
+	public void endCompound() {}
+
+	/**
+	 * Called at the start of a list.
+	 * @param elementTypeId The type id of the elements of this list.
+	 * @param length The number of elements of this list.
+	 * @return {@code false} to skip all elements of this list. {@link #endList()}
+	 *         will not be called in this case.
+	 * */
+	public boolean startList(byte elementTypeId, int length) {
+		return true;
+	}
+
+	/**
+	 * Called after the last element of a list has been read.
+	 * */
+	public void endList() {}
+
+	public void visitByte(byte value) {}
+
+	public void visitShort(short value) {}
+
+	public void visitInt(int value) {}
+
+	public void visitLong(long value) {}
+
+	public void visitFloat(float value) {}
+
+	public void visitDouble(double value) {}
+
+	public void visitString(String value) {}
+
+	public void visitByteArray(byte[] value) {}
+
+	public void visitIntArray(int[] value) {}
+
+	public void visitLongArray(long[] value) {}
+}
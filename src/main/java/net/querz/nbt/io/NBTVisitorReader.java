@@ -0,0 +1,120 @@
+package net.querz.nbt.io;
+
+import net.querz.io.ArrayIO;
+import net.querz.io.MaxDepthIO;
+import net.querz.nbt.tag.ByteArrayTag;
+import net.querz.nbt.tag.ByteTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.EndTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.IntArrayTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringInput;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads binary NBT data and reports it to an {@link NBTVisitor}.
+ * */
+final class NBTVisitorReader extends MaxDepthIO {
+
+	private final DataInputStream stream;
+	private final StringInput strings;
+	private final NBTVisitor visitor;
+
+	NBTVisitorReader(DataInputStream stream, NBTVisitor visitor) {
+		this.stream = stream;
+		strings = stream instanceof StringInput ? (StringInput) stream : null;
+		this.visitor = visitor;
+	}
+
+	void read(byte typeId, int maxDepth) throws IOException {
+		switch (typeId) {
+			case EndTag.ID:
+				break;
+			case ByteTag.ID:
+				visitor.visitByte(stream.readByte());
+				break;
+			case ShortTag.ID:
+				visitor.visitShort(stream.readShort());
+				break;
+			case IntTag.ID:
+				visitor.visitInt(stream.readInt());
+				break;
+			case LongTag.ID:
+				visitor.visitLong(stream.readLong());
+				break;
+			case FloatTag.ID:
+				visitor.visitFloat(stream.readFloat());
+				break;
+			case DoubleTag.ID:
+				visitor.visitDouble(stream.readDouble());
+				break;
+			case StringTag.ID:
+				visitor.visitString(strings != null ? strings.readString() : stream.readUTF());
+				break;
+			case ListTag.ID:
+				readList(maxDepth);
+				break;
+			case CompoundTag.ID:
+				readCompound(maxDepth);
+				break;
+			case ByteArrayTag.ID:
+				byte[] b = new byte[stream.readInt()];
+				stream.readFully(b);
+				visitor.visitByteArray(b);
+				break;
+			case IntArrayTag.ID:
+				int[] i = new int[stream.readInt()];
+				ArrayIO.readInts(stream, i);
+				visitor.visitIntArray(i);
+				break;
+			case LongArrayTag.ID:
+				long[] l = new long[stream.readInt()];
+				ArrayIO.readLongs(stream, l);
+				visitor.visitLongArray(l);
+				break;
+			default:
+				throw new IOException("invalid tag type id " + typeId);
+		}
+	}
+
+	private void readList(int maxDepth) throws IOException {
+		byte typeId = stream.readByte();
+		int length = Math.max(0, stream.readInt());
+		if (!visitor.startList(typeId, length)) {
+			for (int i = 0; i < length; i++) {
+				Tag.skip(typeId, stream, decrementMaxDepth(maxDepth));
+			}
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			read(typeId, decrementMaxDepth(maxDepth));
+		}
+		visitor.endList();
+	}
+
+	private void readCompound(int maxDepth) throws IOException {
+		if (!visitor.startCompound()) {
+			Tag.skip(CompoundTag.ID, stream, maxDepth);
+			return;
+		}
+		byte typeId;
+		while ((typeId = stream.readByte()) != EndTag.ID) {
+			String key = strings != null ? strings.readKey() : stream.readUTF();
+			if (visitor.visitKey(typeId, key)) {
+				read(typeId, decrementMaxDepth(maxDepth));
+			} else {
+				Tag.skip(typeId, stream, decrementMaxDepth(maxDepth));
+			}
+		}
+		visitor.endCompound();
+	}
+}
@@ -0,0 +1,89 @@
+package net.querz.nbt.io;
+
+/**
+ * A bounded cache deduplicating strings read from NBT data, so that the same key or value
+ * read many times is retained only once. The cache is direct mapped: each string can only be
+ * stored in the slot selected by its hash code and replaces the string stored there before,
+ * so lookups and updates take constant time and the memory used by the cache never grows.
+ * It can be shared by multiple threads without synchronization, because slots only ever
+ * hold references to immutable strings; a lost update only costs a duplicate.
+ * */
+public final class StringCache {
+
+	private final String[] table;
+	private final int mask;
+
+	/**
+	 * @param capacity The number of slots, rounded up to the next power of two.
+	 * @throws IllegalArgumentException If {@code capacity} is not positive or larger than {@code 2^30}.
+	 * */
+	public StringCache(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		table = new String[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Returns a cached string equal to {@code s} or caches and returns {@code s}.
+	 * @param s The string to deduplicate.
+	 * @return A string equal to {@code s}.
+	 * */
+	public String deduplicate(String s) {
+		int index = index(s.hashCode());
+		String cached = table[index];
+		if (cached != null && cached.equals(s)) {
+			return cached;
+		}
+		table[index] = s;
+		return s;
+	}
+
+	/**
+	 * Looks up a cached string without creating a string from {@code ascii} first.
+	 * @param ascii The ASCII bytes of the string.
+	 * @param length The number of bytes.
+	 * @param hash The {@link String#hashCode()} of the string.
+	 * @return The cached string or {@code null} if it is not cached.
+	 * */
+	String find(byte[] ascii, int length, int hash) {
+		String cached = table[index(hash)];
+		if (cached == null || cached.length() != length || cached.hashCode() != hash) {
+			return null;
+		}
+		for (int i = 0; i < length; i++) {
+			if (cached.charAt(i) != ascii[i]) {
+				return null;
+			}
+		}
+		return cached;
+	}
+
+	/**
+	 * Caches a string that is known to not be cached yet.
+	 * @param s The string.
+	 * @param hash The {@link String#hashCode()} of {@code s}.
+	 * @return {@code s}
+	 * */
+	String store(String s, int hash) {
+		table[index(hash)] = s;
+		return s;
+	}
+
+	private int index(int hash) {
+		// spread the high bits, the hash codes of short keys differ mostly in the low bits anyway
+		return (hash ^ hash >>> 16) & mask;
+	}
+
+	/**
+	 * @return The number of slots of this cache.
+	 * */
+	public int capacity() {
+		return table.length;
+	}
+}
@@ -9,15 +9,17 @@ public class ByteTag extends NumberTag<Byte> implements Comparable<ByteTag> {
 	public static final byte ZERO_VALUE = 0;
 
 	public ByteTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
+	// Byte.valueOf caches every byte, so the value is kept in Tag: no wrapper is allocated
+	// and a ByteTag stays smaller than with a primitive field next to the unused reference
 	public ByteTag(byte value) {
 		super(value);
 	}
 
 	public ByteTag(boolean value) {
-		super((byte) (value ? 1 : 0));
+		this((byte) (value ? 1 : 0));
 	}
 
 	@Override
@@ -26,26 +28,36 @@ public class ByteTag extends NumberTag<Byte> implements Comparable<ByteTag> {
 	}
 
 	public boolean asBoolean() {
-		return getValue() > 0;
+		return asByte() > 0;
 	}
 
 	public void setValue(byte value) {
 		super.setValue(value);
 	}
 
+	@Override
+	public byte asByte() {
+		return getValue();
+	}
+
 	@Override
 	public boolean equals(Object other) {
 		return super.equals(other) && asByte() == ((ByteTag) other).asByte();
 	}
 
+	@Override
+	public int hashCode() {
+		return asByte();
+	}
+
 	@Override
 	public int compareTo(ByteTag other) {
-		return getValue().compareTo(other.getValue());
+		return Byte.compare(asByte(), other.asByte());
 	}
 
 	@Override
 	public ByteTag clone() {
-		return new ByteTag(getValue());
+		return new ByteTag(asByte());
 	}
 
 	@Override
@@ -0,0 +1,260 @@
+package net.querz.nbt.tag;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The default backing map of a {@link CompoundTag}.
+ * Up to {@link CompactMap#MAX_ARRAY_SIZE} entries are stored in two parallel arrays in insertion order
+ * and looked up with a linear scan, which needs a fraction of the memory of a {@link HashMap}
+ * and is just as fast for the small compounds that make up most NBT data.
+ * When more entries are added, the entries are moved to a {@link LinkedHashMap} for the rest of the lifetime of this map,
+ * so the iteration order, and with it the order of SNBT and binary output, is the insertion order at every size.
+ * */
+final class CompactMap extends AbstractMap<String, Tag<?>> {
+
+	static final int MAX_ARRAY_SIZE = 8;
+
+	private static final String[] EMPTY_KEYS = new String[0];
+	private static final Tag<?>[] EMPTY_VALUES = new Tag<?>[0];
+
+	private String[] keys = EMPTY_KEYS;
+	private Tag<?>[] values = EMPTY_VALUES;
+	private int size;
+	// incremented by every structural modification, so that iterators over the arrays can fail fast
+	private int modCount;
+	// not null once this map grew larger than MAX_ARRAY_SIZE
+	private LinkedHashMap<String, Tag<?>> map;
+
+	private int indexOf(Object key) {
+		for (int i = 0; i < size; i++) {
+			if (keys[i] == key || keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return map != null ? map.size() : size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map != null ? map.containsKey(key) : indexOf(key) != -1;
+	}
+
+	@Override
+	public Tag<?> get(Object key) {
+		if (map != null) {
+			return map.get(key);
+		}
+		int index = indexOf(key);
+		return index == -1 ? null : values[index];
+	}
+
+	@Override
+	public Tag<?> put(String key, Tag<?> value) {
+		if (map != null) {
+			return map.put(key, value);
+		}
+		int index = indexOf(key);
+		if (index != -1) {
+			Tag<?> old = values[index];
+			values[index] = value;
+			return old;
+		}
+		modCount++;
+		if (size == MAX_ARRAY_SIZE) {
+			map = new LinkedHashMap<>(MAX_ARRAY_SIZE * 2);
+			for (int i = 0; i < size; i++) {
+				map.put(keys[i], values[i]);
+			}
+			keys = null;
+			values = null;
+			size = 0;
+			return map.put(key, value);
+		}
+		if (size == keys.length) {
+			int capacity = size == 0 ? 2 : Math.min(size * 2, MAX_ARRAY_SIZE);
+			String[] newKeys = new String[capacity];
+			Tag<?>[] newValues = new Tag<?>[capacity];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			keys = newKeys;
+			values = newValues;
+		}
+		keys[size] = key;
+		values[size++] = value;
+		return null;
+	}
+
+	@Override
+	public Tag<?> remove(Object key) {
+		if (map != null) {
+			return map.remove(key);
+		}
+		int index = indexOf(key);
+		if (index == -1) {
+			return null;
+		}
+		Tag<?> old = values[index];
+		removeAt(index);
+		return old;
+	}
+
+	private void removeAt(int index) {
+		modCount++;
+		int moved = size - index - 1;
+		System.arraycopy(keys, index + 1, keys, index, moved);
+		System.arraycopy(values, index + 1, values, index, moved);
+		size--;
+		keys[size] = null;
+		values[size] = null;
+	}
+
+	@Override
+	public void clear() {
+		if (map != null) {
+			map.clear();
+			return;
+		}
+		modCount++;
+		for (int i = 0; i < size; i++) {
+			keys[i] = null;
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Tag<?>>> entrySet() {
+		if (map != null) {
+			return map.entrySet();
+		}
+		return new AbstractSet<Map.Entry<String, Tag<?>>>() {
+
+			@Override
+			public Iterator<Map.Entry<String, Tag<?>>> iterator() {
+				if (map != null) {
+					return map.entrySet().iterator();
+				}
+				return new ArrayIterator();
+			}
+
+			@Override
+			public int size() {
+				return CompactMap.this.size();
+			}
+
+			@Override
+			public void clear() {
+				CompactMap.this.clear();
+			}
+		};
+	}
+
+	private class ArrayIterator implements Iterator<Map.Entry<String, Tag<?>>> {
+
+		private int next;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			// a modification, including the move to a LinkedHashMap, is reported by next() instead of ending the iteration
+			return next < size || modCount != expectedModCount;
+		}
+
+		@Override
+		public Map.Entry<String, Tag<?>> next() {
+			checkForComodification();
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			return new ArrayEntry(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last == -1) {
+				throw new IllegalStateException();
+			}
+			checkForComodification();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+
+		private void checkForComodification() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	private class ArrayEntry implements Map.Entry<String, Tag<?>> {
+
+		private final String key;
+		private final int index;
+
+		ArrayEntry(int index) {
+			this.key = keys[index];
+			this.index = index;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Tag<?> getValue() {
+			if (map == null && index < size && keys[index] == key) {
+				return values[index];
+			}
+			return get(key);
+		}
+
+		@Override
+		public Tag<?> setValue(Tag<?> value) {
+			if (map == null && index < size && keys[index] == key) {
+				Tag<?> old = values[index];
+				values[index] = value;
+				return old;
+			}
+			return put(key, value);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) other;
+			Tag<?> value = getValue();
+			return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Tag<?> value = getValue();
+			return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package net.querz.nbt.tag;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
@@ -18,13 +18,17 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 		super(createEmptyValue());
 	}
 
+	private CompoundTag(Map<String, Tag<?>> value) {
+		super(value);
+	}
+
 	@Override
 	public byte getID() {
 		return ID;
 	}
 
 	private static Map<String, Tag<?>> createEmptyValue() {
-		return new HashMap<>(8);
+		return new CompactMap();
 	}
 
 	public int size() {
@@ -278,6 +282,23 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 		return copy;
 	}
 
+	/**
+	 * Creates a copy of this CompoundTag that throws an {@link UnsupportedOperationException}
+	 * on every attempt to add, replace or remove an entry. Nested CompoundTags are copied the same way,
+	 * all other nested tags are cloned. {@link CompoundTag#clone()} of the copy is modifiable again.
+	 * An unmodifiable copy can be shared safely as long as none of its nested tags other than
+	 * CompoundTags is modified.
+	 * @return An unmodifiable copy of this CompoundTag.
+	 * */
+	public CompoundTag unmodifiableCopy() {
+		Map<String, Tag<?>> copy = new CompactMap();
+		for (Map.Entry<String, Tag<?>> e : getValue().entrySet()) {
+			Tag<?> value = e.getValue();
+			copy.put(e.getKey(), value instanceof CompoundTag ? ((CompoundTag) value).unmodifiableCopy() : value.clone());
+		}
+		return new CompoundTag(Collections.unmodifiableMap(copy));
+	}
+
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
 		for(Map.Entry<String, Tag<?>> entry : this) {
@@ -286,7 +307,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 				throw new IOException("end tag not allowed");
 			}
 			stream.writeByte(t.getID());
-			stream.writeUTF(entry.getKey());
+			writeString(stream, entry.getKey());
 			//stream.writeRawTag(t, decrementMaxDepth(max_depth));
 			t.write(stream, decrementMaxDepth(max_depth));
 		}
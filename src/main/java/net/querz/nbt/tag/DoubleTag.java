@@ -8,12 +8,14 @@ public class DoubleTag extends NumberTag<Double> implements Comparable<DoubleTag
 	public static final byte ID = 6;
 	public static final double ZERO_VALUE = 0.0D;
 
+	private double value;
+
 	public DoubleTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public DoubleTag(double value) {
-		super(value);
+		this.value = value;
 	}
 
 	@Override
@@ -22,26 +24,77 @@ public class DoubleTag extends NumberTag<Double> implements Comparable<DoubleTag
 	}
 
 	public void setValue(double value) {
-		super.setValue(value);
+		this.value = value;
+	}
+
+	@Override
+	protected Double getValue() {
+		return value;
+	}
+
+	@Override
+	protected void setValue(Double value) {
+		this.value = checkValue(value);
+	}
+
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	@Override
+	public int asInt() {
+		return (int) value;
+	}
+
+	@Override
+	public long asLong() {
+		return (long) value;
+	}
+
+	@Override
+	public float asFloat() {
+		return (float) value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && getValue().equals(((DoubleTag) other).getValue());
+		return super.equals(other) && Double.doubleToLongBits(value) == Double.doubleToLongBits(((DoubleTag) other).value);
+	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(value);
+		return (int) (bits ^ bits >>> 32);
 	}
 
 	@Override
 	public int compareTo(DoubleTag other) {
-		return getValue().compareTo(other.getValue());
+		return Double.compare(value, other.value);
+	}
+
+	@Override
+	public String valueToString(int maxDepth) {
+		return String.valueOf(value);
 	}
 
 	@Override
 	public DoubleTag clone() {
-		return new DoubleTag(getValue());
+		return new DoubleTag(value);
 	}
 
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
-		stream.writeDouble(asDouble());
+		stream.writeDouble(value);
 	}
 }
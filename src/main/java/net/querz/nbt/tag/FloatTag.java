@@ -8,12 +8,14 @@ public class FloatTag extends NumberTag<Float> implements Comparable<FloatTag> {
 	public static final byte ID = 5;
 	public static final float ZERO_VALUE = 0.0F;
 
+	private float value;
+
 	public FloatTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public FloatTag(float value) {
-		super(value);
+		this.value = value;
 	}
 
 	@Override
@@ -22,26 +24,76 @@ public class FloatTag extends NumberTag<Float> implements Comparable<FloatTag> {
 	}
 
 	public void setValue(float value) {
-		super.setValue(value);
+		this.value = value;
+	}
+
+	@Override
+	protected Float getValue() {
+		return value;
+	}
+
+	@Override
+	protected void setValue(Float value) {
+		this.value = checkValue(value);
+	}
+
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	@Override
+	public int asInt() {
+		return (int) value;
+	}
+
+	@Override
+	public long asLong() {
+		return (long) value;
+	}
+
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && getValue().equals(((FloatTag) other).getValue());
+		return super.equals(other) && Float.floatToIntBits(value) == Float.floatToIntBits(((FloatTag) other).value);
+	}
+
+	@Override
+	public int hashCode() {
+		return Float.floatToIntBits(value);
 	}
 
 	@Override
 	public int compareTo(FloatTag other) {
-		return getValue().compareTo(other.getValue());
+		return Float.compare(value, other.value);
+	}
+
+	@Override
+	public String valueToString(int maxDepth) {
+		return String.valueOf(value);
 	}
 
 	@Override
 	public FloatTag clone() {
-		return new FloatTag(getValue());
+		return new FloatTag(value);
 	}
 
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
-		stream.writeFloat(asFloat());
+		stream.writeFloat(value);
 	}
 }
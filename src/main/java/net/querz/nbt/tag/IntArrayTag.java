@@ -1,5 +1,6 @@
 package net.querz.nbt.tag;
 
+import net.querz.io.ArrayIO;
 import java.util.Arrays;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -45,8 +46,6 @@ public class IntArrayTag extends ArrayTag<int[]> implements Comparable<IntArrayT
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
 		stream.writeInt(length());
-		for(int i : getValue()) {
-			stream.writeInt(i);
-		}
+		ArrayIO.writeInts(stream, getValue());
 	}
 }
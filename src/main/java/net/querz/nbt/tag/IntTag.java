@@ -8,12 +8,14 @@ public class IntTag extends NumberTag<Integer> implements Comparable<IntTag> {
 	public static final byte ID = 3;
 	public static final int ZERO_VALUE = 0;
 
+	private int value;
+
 	public IntTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public IntTag(int value) {
-		super(value);
+		this.value = value;
 	}
 
 	@Override
@@ -22,26 +24,76 @@ public class IntTag extends NumberTag<Integer> implements Comparable<IntTag> {
 	}
 
 	public void setValue(int value) {
-		super.setValue(value);
+		this.value = value;
+	}
+
+	@Override
+	protected Integer getValue() {
+		return value;
+	}
+
+	@Override
+	protected void setValue(Integer value) {
+		this.value = checkValue(value);
+	}
+
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	@Override
+	public int asInt() {
+		return value;
+	}
+
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asInt() == ((IntTag) other).asInt();
+		return super.equals(other) && value == ((IntTag) other).value;
+	}
+
+	@Override
+	public int hashCode() {
+		return value;
 	}
 
 	@Override
 	public int compareTo(IntTag other) {
-		return getValue().compareTo(other.getValue());
+		return Integer.compare(value, other.value);
+	}
+
+	@Override
+	public String valueToString(int maxDepth) {
+		return String.valueOf(value);
 	}
 
 	@Override
 	public IntTag clone() {
-		return new IntTag(getValue());
+		return new IntTag(value);
 	}
 
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
-		stream.writeInt(asInt());
+		stream.writeInt(value);
 	}
 }
@@ -8,12 +8,14 @@ public class LongTag extends NumberTag<Long> implements Comparable<LongTag> {
 	public static final byte ID = 4;
 	public static final long ZERO_VALUE = 0L;
 
+	private long value;
+
 	public LongTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public LongTag(long value) {
-		super(value);
+		this.value = value;
 	}
 
 	@Override
@@ -22,26 +24,76 @@ public class LongTag extends NumberTag<Long> implements Comparable<LongTag> {
 	}
 
 	public void setValue(long value) {
-		super.setValue(value);
+		this.value = value;
+	}
+
+	@Override
+	protected Long getValue() {
+		return value;
+	}
+
+	@Override
+	protected void setValue(Long value) {
+		this.value = checkValue(value);
+	}
+
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	@Override
+	public short asShort() {
+		return (short) value;
+	}
+
+	@Override
+	public int asInt() {
+		return (int) value;
+	}
+
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asLong() == ((LongTag) other).asLong();
+		return super.equals(other) && value == ((LongTag) other).value;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (value ^ value >>> 32);
 	}
 
 	@Override
 	public int compareTo(LongTag other) {
-		return getValue().compareTo(other.getValue());
+		return Long.compare(value, other.value);
+	}
+
+	@Override
+	public String valueToString(int maxDepth) {
+		return String.valueOf(value);
 	}
 
 	@Override
 	public LongTag clone() {
-		return new LongTag(getValue());
+		return new LongTag(value);
 	}
 
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
-		stream.writeLong(asLong());
+		stream.writeLong(value);
 	}
 }
@@ -6,6 +6,8 @@ public abstract class NumberTag<T extends Number & Comparable<T>> extends Tag<T>
 		super(value);
 	}
 
+	protected NumberTag() {}
+
 	public byte asByte() {
 		return getValue().byteValue();
 	}
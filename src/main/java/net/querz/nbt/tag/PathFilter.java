@@ -0,0 +1,128 @@
+package net.querz.nbt.tag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Selects which parts of an NBT structure are created while it is being read.
+ * Paths are dot-separated names of nested {@link CompoundTag} entries, starting below the root tag,
+ * e.g. {@code "Level.Sections.BlockStates"}. The elements of a {@link ListTag} share the path
+ * of the list, so {@code "Level.Sections.BlockStates"} applies to every section of the list
+ * {@code "Level.Sections"}. A {@code []} suffix may be added to the name of a list for readability,
+ * so {@code "Level.Sections[].BlockStates"} is equivalent.
+ *
+ * <p>If no path has been included, everything except the excluded paths is read. Otherwise only the
+ * included paths, their ancestors and everything below them are read, except for the excluded paths.
+ * Compound entries that are not read are skipped using {@link Tag#skip(byte, java.io.DataInputStream, int)}
+ * without creating any objects for them.</p>
+ *
+ * <p>A PathFilter must not be modified while it is used for reading, but may be shared between threads
+ * reading concurrently.</p>
+ * */
+public final class PathFilter {
+
+	private static final PathFilter ALL = new PathFilter(true);
+
+	private Map<String, PathFilter> children;
+	private boolean include;
+	private boolean exclude;
+	private boolean complete;
+	private boolean hasIncludes;
+
+	public PathFilter() {
+		this(true);
+	}
+
+	private PathFilter(boolean complete) {
+		this.complete = complete;
+	}
+
+	/**
+	 * Adds paths that should be read.
+	 * @param paths The paths to include.
+	 * @return This PathFilter.
+	 * @throws IllegalArgumentException If a path is empty or contains empty names.
+	 * */
+	public PathFilter include(String... paths) {
+		for (String path : paths) {
+			node(path).include = true;
+			hasIncludes = true;
+		}
+		update(!hasIncludes);
+		return this;
+	}
+
+	/**
+	 * Adds paths that should be skipped, even if they are below an included path.
+	 * @param paths The paths to exclude.
+	 * @return This PathFilter.
+	 * @throws IllegalArgumentException If a path is empty or contains empty names.
+	 * */
+	public PathFilter exclude(String... paths) {
+		for (String path : paths) {
+			node(path).exclude = true;
+		}
+		update(!hasIncludes);
+		return this;
+	}
+
+	/**
+	 * Returns the filter for the value of the compound entry {@code key}.
+	 * @param key The name of the compound entry.
+	 * @return {@code null} if the entry should be skipped, otherwise the filter for its value.
+	 * */
+	public PathFilter getChild(String key) {
+		PathFilter child = children == null ? null : children.get(key);
+		if (child == null) {
+			return complete ? ALL : null;
+		}
+		if (child.exclude) {
+			return null;
+		}
+		if (child.children == null) {
+			return child.complete ? ALL : null;
+		}
+		return child;
+	}
+
+	/**
+	 * @return {@code true} if this filter does not exclude anything below its current path.
+	 * */
+	public boolean isComplete() {
+		return complete && children == null;
+	}
+
+	private PathFilter node(String path) {
+		if (path == null || path.isEmpty()) {
+			throw new IllegalArgumentException("empty path");
+		}
+		PathFilter node = this;
+		for (String name : path.split("\\.", -1)) {
+			if (name.endsWith("[]")) {
+				name = name.substring(0, name.length() - 2);
+			}
+			if (name.isEmpty()) {
+				throw new IllegalArgumentException("empty name in path \"" + path + "\"");
+			}
+			if (node.children == null) {
+				node.children = new HashMap<>(4);
+			}
+			PathFilter child = node.children.get(name);
+			if (child == null) {
+				child = new PathFilter(false);
+				node.children.put(name, child);
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	private void update(boolean parentComplete) {
+		complete = include || parentComplete;
+		if (children != null) {
+			for (PathFilter child : children.values()) {
+				child.update(complete);
+			}
+		}
+	}
+}
@@ -8,12 +8,14 @@ public class ShortTag extends NumberTag<Short> implements Comparable<ShortTag> {
 	public static final byte ID = 2;
 	public static final short ZERO_VALUE = 0;
 
+	private short value;
+
 	public ShortTag() {
-		super(ZERO_VALUE);
+		this(ZERO_VALUE);
 	}
 
 	public ShortTag(short value) {
-		super(value);
+		this.value = value;
 	}
 
 	@Override
@@ -22,26 +24,76 @@ public class ShortTag extends NumberTag<Short> implements Comparable<ShortTag> {
 	}
 
 	public void setValue(short value) {
-		super.setValue(value);
+		this.value = value;
+	}
+
+	@Override
+	protected Short getValue() {
+		return value;
+	}
+
+	@Override
+	protected void setValue(Short value) {
+		this.value = checkValue(value);
+	}
+
+	@Override
+	public byte asByte() {
+		return (byte) value;
+	}
+
+	@Override
+	public short asShort() {
+		return value;
+	}
+
+	@Override
+	public int asInt() {
+		return value;
+	}
+
+	@Override
+	public long asLong() {
+		return value;
+	}
+
+	@Override
+	public float asFloat() {
+		return value;
+	}
+
+	@Override
+	public double asDouble() {
+		return value;
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && asShort() == ((ShortTag) other).asShort();
+		return super.equals(other) && value == ((ShortTag) other).value;
+	}
+
+	@Override
+	public int hashCode() {
+		return value;
 	}
 
 	@Override
 	public int compareTo(ShortTag other) {
-		return getValue().compareTo(other.getValue());
+		return Short.compare(value, other.value);
+	}
+
+	@Override
+	public String valueToString(int maxDepth) {
+		return String.valueOf(value);
 	}
 
 	@Override
 	public ShortTag clone() {
-		return new ShortTag(getValue());
+		return new ShortTag(value);
 	}
 
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
-		stream.writeShort(asShort());
+		stream.writeShort(value);
 	}
 }
@@ -0,0 +1,26 @@
+package net.querz.nbt.tag;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Implemented by a {@link DataInputStream} that reads the strings of NBT data itself, e.g. to deduplicate them.
+ * {@link Tag#read(byte, DataInputStream, int)} reads all compound keys and String tags through this interface
+ * if the stream implements it, instead of using {@link DataInputStream#readUTF()}.
+ * */
+public interface StringInput {
+
+	/**
+	 * Reads a compound key or the name of a root tag in modified UTF-8.
+	 * @return The key.
+	 * @throws IOException If the key could not be read.
+	 * */
+	String readKey() throws IOException;
+
+	/**
+	 * Reads the value of a String tag in modified UTF-8.
+	 * @return The value.
+	 * @throws IOException If the value could not be read.
+	 * */
+	String readString() throws IOException;
+}
@@ -0,0 +1,19 @@
+package net.querz.nbt.tag;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Implemented by a {@link DataOutputStream} that writes the strings of NBT data itself, e.g. with a faster encoder.
+ * {@link Tag#write(DataOutputStream, int)} writes all compound keys and String tags through this interface
+ * if the stream implements it, instead of using {@link DataOutputStream#writeUTF(String)}.
+ * */
+public interface StringOutput {
+
+	/**
+	 * Writes a compound key or the value of a String tag in modified UTF-8.
+	 * @param s The string to write.
+	 * @throws IOException If the string could not be written or is longer than 65535 bytes when encoded.
+	 * */
+	void writeString(String s) throws IOException;
+}
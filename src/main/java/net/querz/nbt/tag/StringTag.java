@@ -53,6 +53,6 @@ public class StringTag extends Tag<String> implements Comparable<StringTag> {
 
 	@Override
 	public void write(DataOutputStream stream, int max_depth) throws IOException {
-		stream.writeUTF(getValue());
+		writeString(stream, getValue());
 	}
 }
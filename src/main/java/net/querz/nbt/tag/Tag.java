@@ -1,5 +1,6 @@
 package net.querz.nbt.tag;
 
+import net.querz.io.ArrayIO;
 import net.querz.io.MaxDepthReachedException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -9,6 +10,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.io.DataOutputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 
 /**
@@ -67,6 +69,13 @@ public abstract class Tag<T> implements Cloneable {
 		setValue(value);
 	}
 
+	/**
+	 * Initializes a Tag that stores its value in its own field, e.g. as a primitive.
+	 * Such a Tag must override {@link Tag#getValue()}, {@link Tag#setValue(Object)} and {@link Tag#hashCode()}.
+	 * The value reference of Tag remains in such a Tag, so this saves the wrapper object but not the reference.
+	 * */
+	protected Tag() {}
+
 	/**
 	 * @return This Tag's ID, usually used for serialization and deserialization.
 	 * */
@@ -235,6 +244,29 @@ public abstract class Tag<T> implements Cloneable {
 		return id.byteValue();
 	}
 
+	private static String readKey(DataInputStream stream) throws IOException {
+		return stream instanceof StringInput ? ((StringInput) stream).readKey() : stream.readUTF();
+	}
+
+	private static String readString(DataInputStream stream) throws IOException {
+		return stream instanceof StringInput ? ((StringInput) stream).readString() : stream.readUTF();
+	}
+
+	/**
+	 * Writes a compound key or the value of a String tag, using the stream's own encoder if it implements
+	 * {@link StringOutput}.
+	 * @param stream The stream to write to.
+	 * @param s The string to write.
+	 * @throws IOException If the string could not be written.
+	 * */
+	protected static void writeString(DataOutputStream stream, String s) throws IOException {
+		if (stream instanceof StringOutput) {
+			((StringOutput) stream).writeString(s);
+		} else {
+			stream.writeUTF(s);
+		}
+	}
+
 	public static Tag<?> read(byte type_id, DataInputStream stream, int max_depth) throws IOException {
 		switch(type_id) {
 			case EndTag.ID:
@@ -252,7 +284,7 @@ public abstract class Tag<T> implements Cloneable {
 			case DoubleTag.ID:
 				return new DoubleTag(stream.readDouble());
 			case StringTag.ID:
-				return new StringTag(stream.readUTF());
+				return new StringTag(readString(stream));
 			case ListTag.ID:
 				type_id = stream.readByte();
 				{
@@ -269,7 +301,7 @@ public abstract class Tag<T> implements Cloneable {
 					CompoundTag comp = new CompoundTag();
 					int id;
 					while((id = stream.readByte() & 0xff) != 0) {
-						String key = stream.readUTF();
+						String key = readKey(stream);
 						Tag<?> element = read((byte)id, stream, decrementMaxDepth(max_depth));
 						comp.put(key, element);
 					}
@@ -285,14 +317,14 @@ public abstract class Tag<T> implements Cloneable {
 				{
 					int[] a = new int[stream.readInt()];
 					IntArrayTag t = new IntArrayTag(a);
-					for(int i = 0; i < a.length; i++) a[i] = stream.readInt();
+					ArrayIO.readInts(stream, a);
 					return t;
 				}
 			case LongArrayTag.ID:
 				{
 					long[] a = new long[stream.readInt()];
 					LongArrayTag t = new LongArrayTag(a);
-					for(int i = 0; i < a.length; i++) a[i] = stream.readLong();
+					ArrayIO.readLongs(stream, a);
 					return t;
 				}
 			default:
@@ -300,6 +332,150 @@ public abstract class Tag<T> implements Cloneable {
 		}
 	}
 
+	/**
+	 * Reads a tag of the given type from {@code stream}, creating only the parts of it selected by {@code filter}.
+	 * Compound entries rejected by the filter are consumed with {@link #skip(byte, DataInputStream, int)}.
+	 * @param type_id The type id of the tag to read.
+	 * @param stream The stream to read from.
+	 * @param max_depth The maximum nesting depth.
+	 * @param filter The filter selecting the compound entries to read, or {@code null} to read everything.
+	 * @return The tag that has been read.
+	 * @throws IOException If the stream does not contain valid NBT data.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	public static Tag<?> read(byte type_id, DataInputStream stream, int max_depth, PathFilter filter) throws IOException {
+		if(filter == null || filter.isComplete()) {
+			return read(type_id, stream, max_depth);
+		}
+		switch(type_id) {
+			case ListTag.ID:
+				type_id = stream.readByte();
+				{
+					ListTag<?> list = ListTag.createUnchecked(idClassMapping.get(Byte.valueOf(type_id)));
+					int length = stream.readInt();
+					if(length < 0) length = 0;
+					for (int i = 0; i < length; i++) {
+						list.addUnchecked(read(type_id, stream, decrementMaxDepth(max_depth), filter));
+					}
+					return list;
+				}
+			case CompoundTag.ID:
+				{
+					CompoundTag comp = new CompoundTag();
+					int id;
+					while((id = stream.readByte() & 0xff) != 0) {
+						String key = readKey(stream);
+						PathFilter child = filter.getChild(key);
+						if(child == null) {
+							skip((byte)id, stream, decrementMaxDepth(max_depth));
+						} else {
+							comp.put(key, read((byte)id, stream, decrementMaxDepth(max_depth), child));
+						}
+					}
+					return comp;
+				}
+			default:
+				return read(type_id, stream, max_depth);
+		}
+	}
+
+	/**
+	 * Consumes a tag of the given type from {@code stream} without creating any objects for it.
+	 * Strings and arrays are skipped by their length and are never decoded.
+	 * @param type_id The type id of the tag to skip.
+	 * @param stream The stream to read from.
+	 * @param max_depth The maximum nesting depth.
+	 * @throws IOException If the stream ends before the tag or contains an invalid type id.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	public static void skip(byte type_id, DataInputStream stream, int max_depth) throws IOException {
+		switch(type_id) {
+			case EndTag.ID:
+				return;
+			case ByteTag.ID:
+				skipFully(stream, 1);
+				return;
+			case ShortTag.ID:
+				skipFully(stream, 2);
+				return;
+			case IntTag.ID:
+			case FloatTag.ID:
+				skipFully(stream, 4);
+				return;
+			case LongTag.ID:
+			case DoubleTag.ID:
+				skipFully(stream, 8);
+				return;
+			case StringTag.ID:
+				skipFully(stream, stream.readUnsignedShort());
+				return;
+			case ListTag.ID:
+				type_id = stream.readByte();
+				{
+					int length = stream.readInt();
+					if(length <= 0) return;
+					int size = fixedSize(type_id);
+					if(size > 0) {
+						skipFully(stream, (long)size * length);
+						return;
+					}
+					for (int i = 0; i < length; i++) {
+						skip(type_id, stream, decrementMaxDepth(max_depth));
+					}
+					return;
+				}
+			case CompoundTag.ID:
+				{
+					byte id;
+					while((id = stream.readByte()) != EndTag.ID) {
+						skipFully(stream, stream.readUnsignedShort());
+						skip(id, stream, decrementMaxDepth(max_depth));
+					}
+					return;
+				}
+			case ByteArrayTag.ID:
+				skipFully(stream, Math.max(0, stream.readInt()));
+				return;
+			case IntArrayTag.ID:
+				skipFully(stream, 4L * Math.max(0, stream.readInt()));
+				return;
+			case LongArrayTag.ID:
+				skipFully(stream, 8L * Math.max(0, stream.readInt()));
+				return;
+			default:
+				throw new IOException("invalid tag type id " + String.valueOf(type_id));
+		}
+	}
+
+	private static int fixedSize(byte type_id) {
+		switch(type_id) {
+			case ByteTag.ID:
+				return 1;
+			case ShortTag.ID:
+				return 2;
+			case IntTag.ID:
+			case FloatTag.ID:
+				return 4;
+			case LongTag.ID:
+			case DoubleTag.ID:
+				return 8;
+			default:
+				return 0;
+		}
+	}
+
+	private static void skipFully(DataInputStream stream, long n) throws IOException {
+		while(n > 0) {
+			long skipped = stream.skip(n);
+			if(skipped <= 0) {
+				// skip() may return 0 before the end of the stream, read() tells them apart
+				if(stream.read() < 0) throw new EOFException();
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
 /*
 	public static Tag<?> read(DataInputStream stream, int max_depth) throws IOException {
 		byte type_id = stream.readByte();
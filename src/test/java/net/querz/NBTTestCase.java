@@ -4,6 +4,10 @@ import junit.framework.TestCase;
 import net.querz.nbt.io.NBTDeserializer;
 import net.querz.nbt.io.NBTSerializer;
 import net.querz.nbt.io.NamedTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.StringTag;
 import net.querz.nbt.tag.Tag;
 
 import java.io.BufferedInputStream;
@@ -59,6 +63,50 @@ public abstract class NBTTestCase extends TestCase {
 		return new File(resource.getFile());
 	}
 
+	/**
+	 * Creates a compound containing every tag type, including empty, unchecked and nested lists,
+	 * nested compounds, extreme array values and strings that need more than one byte per character in modified UTF-8.
+	 * */
+	protected CompoundTag createTestTag() {
+		CompoundTag c = new CompoundTag();
+		c.putByte("byte", (byte) 1);
+		c.putShort("short", (short) 2);
+		c.putInt("int", 3);
+		c.putLong("long", 4L);
+		c.putFloat("float", 5.5f);
+		c.putDouble("double", 6.5);
+		c.putString("string", "sevën");
+		c.putByteArray("bytes", new byte[]{8, 9});
+		c.putIntArray("ints", new int[]{10, 11});
+		c.putLongArray("longs", new long[]{12, 13});
+		c.putIntArray("negativeInts", new int[]{-1, Integer.MIN_VALUE});
+		c.putLongArray("negativeLongs", new long[]{Long.MIN_VALUE, -1});
+		c.putLongArray("emptyLongs", new long[0]);
+		ListTag<CompoundTag> l = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 3; i++) {
+			CompoundTag e = new CompoundTag();
+			e.putString("id", "minecraft:pig" + i);
+			e.putInt("Age", i);
+			l.add(e);
+		}
+		c.put("list", l);
+		ListTag<StringTag> strings = new ListTag<>(StringTag.class);
+		strings.addString("a");
+		strings.addString("bc");
+		c.put("strings", strings);
+		c.put("empty", new ListTag<>(LongArrayTag.class));
+		c.put("unchecked", ListTag.createUnchecked(null));
+		CompoundTag nested = new CompoundTag();
+		nested.putInt("x", 14);
+		nested.putString("y", "fifteen");
+		nested.put("z", new ListTag<>(CompoundTag.class));
+		c.put("nested", nested);
+		CompoundTag escaped = new CompoundTag();
+		escaped.putInt("DataVersion", 2230);
+		c.put("ké\0y", escaped);
+		return c;
+	}
+
 	protected Tag<?> deserializeFromFile(String f) {
 		try (DataInputStream dis = new DataInputStream(new FileInputStream(getResourceFile(f)))) {
 			return new NBTDeserializer(false).fromStream(dis).getTag();
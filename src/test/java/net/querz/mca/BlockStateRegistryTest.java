@@ -0,0 +1,66 @@
+package net.querz.mca;
+
+import net.querz.nbt.tag.CompoundTag;
+
+public class BlockStateRegistryTest extends MCATestCase {
+
+	@Override
+	public void tearDown() throws Exception {
+		BlockStateRegistry.setGlobal(null);
+		super.tearDown();
+	}
+
+	public void testIds() {
+		BlockStateRegistry registry = new BlockStateRegistry();
+		assertEquals(0, registry.getId(block("minecraft:stone")));
+		assertEquals(1, registry.getId(block("minecraft:dirt")));
+		assertEquals(0, registry.getId(BlockState.of(block("minecraft:stone"))));
+		assertEquals(2, registry.getId(BlockState.of(block("minecraft:air"))));
+		assertEquals(3, registry.size());
+		assertEquals(BlockState.of(block("minecraft:dirt")), registry.getBlockState(1));
+		assertEquals(block("minecraft:air"), registry.getPaletteEntry(2));
+		assertThrowsRuntimeException(() -> registry.getBlockState(3), IndexOutOfBoundsException.class);
+
+		CompoundTag stone = block("minecraft:stone");
+		CompoundTag canonical = registry.canonicalize(stone);
+		assertNotSame(stone, canonical);
+		assertSame(canonical, registry.canonicalize(block("minecraft:stone")));
+		assertThrowsRuntimeException(() -> canonical.putString("Name", "minecraft:dirt"), UnsupportedOperationException.class);
+
+		//palette entries with values of different tag types are registered separately
+		CompoundTag string = block("minecraft:snow");
+		string.put("Properties", new CompoundTag());
+		string.getCompoundTag("Properties").putString("layers", "1");
+		CompoundTag integer = block("minecraft:snow");
+		integer.put("Properties", new CompoundTag());
+		integer.getCompoundTag("Properties").putInt("layers", 1);
+		assertEquals(string, registry.canonicalize(string));
+		assertEquals(integer, registry.canonicalize(integer));
+		assertFalse(registry.getId(string) == registry.getId(integer));
+	}
+
+	public void testGlobal() {
+		assertNull(BlockStateRegistry.getGlobal());
+		MCAFile plain = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		assertNotSame(plain.getBlockStateAt(0, 0, 0), plain.getBlockStateAt(0, 0, 256));
+
+		BlockStateRegistry registry = new BlockStateRegistry();
+		BlockStateRegistry.setGlobal(registry);
+		assertSame(registry, BlockStateRegistry.getGlobal());
+		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		assertTrue(registry.size() > 0);
+		CompoundTag bedrock = f.getBlockStateAt(0, 0, 0);
+		assertEquals(block("minecraft:bedrock"), bedrock);
+		assertSame(bedrock, f.getBlockStateAt(0, 0, 256));
+		assertSame(bedrock, f.getBlockStateAt(511, 0, 511));
+		assertEquals(plain.getChunk(0).updateHandle(0, 0), f.getChunk(0).updateHandle(0, 0));
+
+		//new palette entries are interned as well
+		f.setBlockStateAt(0, 1, 0, block("minecraft:custom"), false);
+		f.setBlockStateAt(16, 1, 0, block("minecraft:custom"), false);
+		assertSame(f.getBlockStateAt(0, 1, 0), f.getBlockStateAt(16, 1, 0));
+		assertSame(registry.canonicalize(block("minecraft:custom")), f.getBlockStateAt(0, 1, 0));
+		f.setBlockStateAt(0, 1, 0, block("minecraft:bedrock"), true);
+		assertSame(bedrock, f.getBlockStateAt(0, 1, 0));
+	}
+}
@@ -0,0 +1,108 @@
+package net.querz.mca;
+
+import net.querz.nbt.tag.CompoundTag;
+
+public class BlockStateTest extends MCATestCase {
+
+	private CompoundTag wire(String power, String north, String south) {
+		CompoundTag c = block("minecraft:redstone_wire");
+		CompoundTag properties = new CompoundTag();
+		properties.putString("power", power);
+		properties.putString("north", north);
+		properties.putString("south", south);
+		c.put("Properties", properties);
+		return c;
+	}
+
+	public void testEquals() {
+		BlockState a = BlockState.of(wire("15", "side", "none"));
+		BlockState b = BlockState.of(wire("15", "side", "none"));
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertFalse(a.equals(BlockState.of(wire("14", "side", "none"))));
+		assertFalse(a.equals(BlockState.of(block("minecraft:redstone_wire"))));
+		assertEquals(BlockState.of(block("minecraft:stone")), BlockState.of(block("minecraft:stone")));
+		assertFalse(BlockState.of(block("minecraft:stone")).equals(BlockState.of(block("minecraft:dirt"))));
+
+		//empty properties are the same as no properties
+		CompoundTag empty = block("minecraft:stone");
+		empty.put("Properties", new CompoundTag());
+		assertEquals(BlockState.of(block("minecraft:stone")), BlockState.of(empty));
+
+		//the order of the properties does not matter
+		CompoundTag reordered = block("minecraft:redstone_wire");
+		CompoundTag properties = new CompoundTag();
+		properties.putString("south", "none");
+		properties.putString("north", "side");
+		properties.putString("power", "15");
+		reordered.put("Properties", properties);
+		assertEquals(a, BlockState.of(reordered));
+		assertEquals(a.hashCode(), BlockState.of(reordered).hashCode());
+	}
+
+	public void testTypedProperties() {
+		CompoundTag string = wire("1", "side", "none");
+		CompoundTag integer = wire("1", "side", "none");
+		integer.getCompoundTag("Properties").putInt("power", 1);
+		BlockState s = BlockState.of(string);
+		BlockState i = BlockState.of(integer);
+		assertFalse(s.equals(i));
+		assertEquals("1", i.getProperty("power"));
+		assertEquals(integer, i.toCompoundTag());
+		assertEquals(i, BlockState.of(i.toCompoundTag()));
+
+		//the values are copied
+		integer.getCompoundTag("Properties").getIntTag("power").setValue(2);
+		assertEquals("1", i.getProperty("power"));
+	}
+
+	public void testOtherKeys() {
+		CompoundTag plain = block("minecraft:chest");
+		CompoundTag extra = block("minecraft:chest");
+		extra.putInt("Extra", 1);
+		BlockState e = BlockState.of(extra);
+		assertFalse(BlockState.of(plain).equals(e));
+		assertFalse(e.equals(BlockState.of(plain)));
+		assertEquals("minecraft:chest", e.getName());
+		assertEquals(extra, e.toCompoundTag());
+		assertEquals(e, BlockState.of(extra.clone()));
+		extra.putInt("Extra", 2);
+		assertFalse(e.equals(BlockState.of(extra)));
+
+		CompoundTag intName = new CompoundTag();
+		intName.putInt("Name", 1);
+		assertNull(BlockState.of(intName).getName());
+		assertFalse(BlockState.of(intName).equals(BlockState.of(new CompoundTag())));
+	}
+
+	public void testGetters() {
+		BlockState state = BlockState.of(wire("15", "side", "none"));
+		assertEquals("minecraft:redstone_wire", state.getName());
+		assertEquals("15", state.getProperty("power"));
+		assertEquals("side", state.getProperty("north"));
+		assertNull(state.getProperty("east"));
+		assertEquals(3, state.getPropertyCount());
+		assertEquals("minecraft:redstone_wire[north=side,power=15,south=none]", state.toString());
+		assertEquals(wire("15", "side", "none"), state.toCompoundTag());
+		assertEquals(block("minecraft:air"), BlockState.of(block("minecraft:air")).toCompoundTag());
+	}
+
+	public void testPaletteLookup() {
+		Section s = createSection(2566, 1, new int[4096], 0);
+		assertEquals(0, s.addToPalette(block("minecraft:air")));
+		assertEquals(1, s.addToPalette(wire("15", "side", "none")));
+		assertEquals(2, s.addToPalette(wire("14", "side", "none")));
+		assertEquals(1, s.addToPalette(wire("15", "side", "none")));
+		assertEquals(3, s.getPalette().size());
+
+		//entries that are not equal as CompoundTags are never merged
+		CompoundTag typed = wire("15", "side", "none");
+		typed.getCompoundTag("Properties").putInt("power", 15);
+		assertEquals(3, s.addToPalette(typed));
+		CompoundTag extra = wire("15", "side", "none");
+		extra.putInt("Extra", 1);
+		assertEquals(4, s.addToPalette(extra));
+		assertEquals(3, s.addToPalette(typed.clone()));
+		assertEquals(typed, s.getPalette().get(3));
+	}
+}
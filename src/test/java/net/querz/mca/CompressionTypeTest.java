@@ -1,5 +1,13 @@
 package net.querz.mca;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
 public class CompressionTypeTest extends MCATestCase {
 
 	public void testGetFromID() {
@@ -8,4 +16,65 @@ public class CompressionTypeTest extends MCATestCase {
 		assertEquals(CompressionType.ZLIB, CompressionType.getFromID(CompressionType.ZLIB.getID()));
 		assertNull(CompressionType.getFromID((byte) -1));
 	}
+
+	private byte[] compress(CompressionType type, byte[] data, int level, int strategy) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream out = type.compress(baos, level, strategy)) {
+			out.write(data);
+		}
+		return baos.toByteArray();
+	}
+
+	private byte[] decompress(CompressionType type, byte[] data) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (InputStream in = type.decompress(new ByteArrayInputStream(data))) {
+			byte[] buffer = new byte[1000];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	public void testRoundTrip() throws IOException {
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 7 == 0 ? i : 0);
+		}
+		for (CompressionType type : CompressionType.values()) {
+			byte[] defaultLevel = compress(type, data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+			// repeated calls reuse pooled instances and must not be affected by previous streams
+			for (int i = 0; i < 2 * ZlibPool.MAX_POOLED + 1; i++) {
+				assertTrue(Arrays.equals(data, decompress(type, defaultLevel)));
+			}
+			byte[] stored = compress(type, data, Deflater.NO_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+			assertTrue(Arrays.equals(data, decompress(type, stored)));
+			byte[] best = compress(type, data, Deflater.BEST_COMPRESSION, Deflater.FILTERED);
+			assertTrue(Arrays.equals(data, decompress(type, best)));
+			assertTrue(Arrays.equals(defaultLevel, compress(type, data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY)));
+			if (type != CompressionType.NONE) {
+				assertTrue(stored.length > best.length);
+			}
+		}
+	}
+
+	public void testInvalidLevel() {
+		assertThrowsRuntimeException(() -> {
+			try {
+				CompressionType.ZLIB.compress(new ByteArrayOutputStream(), 10, Deflater.DEFAULT_STRATEGY);
+			} catch (IOException ex) {
+				fail(ex.getMessage());
+			}
+		}, IllegalArgumentException.class);
+		assertThrowsNoException(() -> compress(CompressionType.ZLIB, new byte[10], Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY));
+	}
+
+	public void testClosedStream() throws IOException {
+		byte[] compressed = compress(CompressionType.ZLIB, new byte[10], Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+		InputStream in = CompressionType.ZLIB.decompress(new ByteArrayInputStream(compressed));
+		in.close();
+		in.close();
+		assertThrowsException(() -> in.read(), IOException.class);
+	}
 }
@@ -1,12 +1,27 @@
 package net.querz.mca;
 
+import net.querz.nbt.io.NBTView;
+import net.querz.nbt.io.StringCache;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.PathFilter;
 import static net.querz.mca.LoadFlags.*;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 public class MCAFileTest extends MCATestCase {
 
@@ -108,6 +123,251 @@ public class MCAFileTest extends MCATestCase {
 		assertEquals(256, f.getChunk(0).getSection(0).getBlockStates().length);
 	}
 
+	public void testDeserializeFromBuffer() {
+		File file = copyResourceToTmp("r.2.2.mca");
+		MCAFile mapped = assertThrowsNoException(() -> MCAUtil.read(file));
+		MCAFile f = new MCAFile(2, 2);
+		assertThrowsNoException(() -> f.deserialize(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), ALL_DATA));
+		for (int i = 0; i < 1024; i++) {
+			if (mapped.getChunk(i) == null) {
+				assertNull(f.getChunk(i));
+				continue;
+			}
+			assertEquals(mapped.getChunk(i).getLastMCAUpdate(), f.getChunk(i).getLastMCAUpdate());
+			assertEquals(mapped.getChunk(i).updateHandle(0, 0), f.getChunk(i).updateHandle(0, 0));
+		}
+		assertEquals(1538048269, f.getChunk(0).getLastMCAUpdate());
+		assertNotNull(f.getChunk(512));
+		assertNotNull(f.getChunk(1023));
+
+		// the header is read from index 0 like the chunk sectors, regardless of the position
+		ByteBuffer moved = ByteBuffer.wrap(assertThrowsNoException(() -> Files.readAllBytes(file.toPath())));
+		moved.position(4096);
+		MCAFile g = new MCAFile(2, 2);
+		assertThrowsNoException(() -> g.deserialize(moved, ALL_DATA));
+		assertEquals(4096, moved.position());
+		assertEquals(1538048269, g.getChunk(0).getLastMCAUpdate());
+		assertEquals(mapped.getChunk(512).updateHandle(0, 0), g.getChunk(512).updateHandle(0, 0));
+
+		assertThrowsException(() -> new MCAFile(2, 2).deserialize(ByteBuffer.allocate(100), ALL_DATA), EOFException.class);
+	}
+
+	public void testPositionalRead() {
+		File file = copyResourceToTmp("r.2.2.mca");
+		MCAFile mapped = new MCAFile(2, 2);
+		MCAFile f = new MCAFile(2, 2);
+		assertThrowsNoException(() -> {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				mapped.deserialize(raf.getChannel(), ALL_DATA);
+				raf.seek(1234);
+				f.deserialize(raf, ALL_DATA);
+				assertEquals(1234, raf.getFilePointer());
+			}
+		});
+		for (int i = 0; i < 1024; i++) {
+			if (mapped.getChunk(i) == null) {
+				assertNull(f.getChunk(i));
+				continue;
+			}
+			assertEquals(mapped.getChunk(i).updateHandle(0, 0), f.getChunk(i).updateHandle(0, 0));
+		}
+
+		File truncated = getNewTmpFile("r.0.0.mca");
+		assertThrowsNoException(() -> {
+			byte[] data = Files.readAllBytes(file.toPath());
+			Files.write(truncated.toPath(), Arrays.copyOf(data, data.length - 4096));
+		});
+		assertThrowsException(() -> MCAUtil.read(truncated), IOException.class);
+	}
+
+	public void testLazyLoad() {
+		File file = copyResourceToTmp("r.2.2.mca");
+		MCAFile eager = assertThrowsNoException(() -> MCAUtil.read(file));
+		MCAFile lazy = assertThrowsNoException(() -> MCAUtil.readLazily(file));
+		assertEquals(eager.getBlockStateAt(0, 62, 0), lazy.getBlockStateAt(0, 62, 0));
+		assertEquals(eager.getBiomeAt(1024, 1024), lazy.getBiomeAt(1024, 1024));
+		assertNull(lazy.getChunk(1));
+		assertSame(lazy.getChunk(0), lazy.getChunk(0));
+		lazy.setChunk(0, null);
+		assertNull(lazy.getChunk(0));
+		File tmpFile = getNewTmpFile("r.2.2.mca");
+		assertEquals(2, assertThrowsNoException(() -> MCAUtil.write(lazy, tmpFile)).intValue());
+
+		MCAFile cached = assertThrowsNoException(() -> MCAUtil.readLazily(file, ALL_DATA, 1));
+		Chunk c = cached.getChunk(0);
+		assertSame(c, cached.getChunk(0));
+		assertNotNull(cached.getChunk(512));
+		assertNotSame(c, cached.getChunk(0));
+		cached.setBlockStateAt(0, 0, 0, block("minecraft:stone"), false);
+		assertNotNull(cached.getChunk(1023));
+		assertEquals(block("minecraft:stone"), cached.getBlockStateAt(0, 0, 0));
+
+		assertThrowsException(() -> new MCAFile(2, 2).deserializeLazily(ByteBuffer.allocate(8192), ALL_DATA, -1), IllegalArgumentException.class);
+		ByteBuffer broken = ByteBuffer.allocate(8192);
+		broken.putInt(0, (2 << 8) | 1);
+		MCAFile b = new MCAFile(2, 2);
+		assertThrowsNoException(() -> b.deserializeLazily(broken, ALL_DATA, 0));
+		assertThrowsRuntimeException(() -> b.getChunk(0), ChunkLoadException.class);
+	}
+
+	public void testConcurrentLazyLoad() throws Exception {
+		File file = copyResourceToTmp("r.2.2.mca");
+		MCAFile eager = assertThrowsNoException(() -> MCAUtil.read(file));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int cacheSize : new int[]{0, 1, 2}) {
+				MCAFile lazy = assertThrowsNoException(() -> MCAUtil.readLazily(file, ALL_DATA, cacheSize));
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < 4; t++) {
+					futures.add(executor.submit(() -> {
+						for (int n = 0; n < 50; n++) {
+							for (int i = 0; i < 1024; i++) {
+								if (eager.getChunk(i) == null) {
+									assertNull(lazy.getChunk(i));
+								} else {
+									assertEquals(eager.getChunk(i).getLastMCAUpdate(), lazy.getChunk(i).getLastMCAUpdate());
+								}
+							}
+							assertEquals(eager.getBlockStateAt(0, 62, 0), lazy.getBlockStateAt(0, 62, 0));
+						}
+						return null;
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get(60, TimeUnit.SECONDS);
+				}
+				if (cacheSize == 0) {
+					assertSame(lazy.getChunk(512), lazy.getChunk(512));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testParallelDeserialize() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (String name : new String[]{"r.2.2.mca", "r.0.0.mca"}) {
+				File file = copyResourceToTmp(name);
+				MCAFile serial = assertThrowsNoException(() -> MCAUtil.read(file));
+				MCAFile parallel = assertThrowsNoException(() -> MCAUtil.read(file, ALL_DATA, executor));
+				MCAFile forkJoin = assertThrowsNoException(() -> MCAUtil.read(file, BLOCK_STATES, new ForkJoinPool(2)));
+				for (int i = 0; i < 1024; i++) {
+					if (serial.getChunk(i) == null) {
+						assertNull(parallel.getChunk(i));
+						assertNull(forkJoin.getChunk(i));
+						continue;
+					}
+					assertEquals(serial.getChunk(i).getLastMCAUpdate(), parallel.getChunk(i).getLastMCAUpdate());
+					assertEquals(serial.getChunk(i).updateHandle(0, 0), parallel.getChunk(i).updateHandle(0, 0));
+					assertNotNull(forkJoin.getChunk(i));
+				}
+			}
+
+			ByteBuffer broken = ByteBuffer.allocate(8192);
+			broken.putInt(0, (2 << 8) | 1);
+			MCAFile b = new MCAFile(2, 2);
+			assertThrowsException(() -> b.deserialize(broken, ALL_DATA, executor), EOFException.class);
+			assertNull(b.getChunk(0));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testParallelDeserializeFromPoolWorker() throws Exception {
+		// a single worker that blocked on the nested chunk tasks would never run them
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			File file = copyResourceToTmp("r.2.2.mca");
+			MCAFile f = pool.submit(() -> MCAUtil.read(file, ALL_DATA, pool)).get(30, TimeUnit.SECONDS);
+			assertNotNull(f.getChunk(0));
+			assertNotNull(f.getChunk(512));
+			assertNotNull(f.getChunk(1023));
+
+			// a worker of a different pool waits for the tasks
+			ForkJoinPool other = new ForkJoinPool(1);
+			try {
+				MCAFile g = other.submit(() -> MCAUtil.read(file, ALL_DATA, pool)).get(30, TimeUnit.SECONDS);
+				assertNotNull(g.getChunk(512));
+			} finally {
+				other.shutdown();
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testParallelSerialize() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+			f.setBlockStateAt(17, 0, 0, block("minecraft:test"), false);
+			File serial = getNewTmpFile("r.2.2.mca");
+			File parallel = getNewTmpFile("r.2.2.mca");
+			assertEquals(4, assertThrowsNoException(() -> MCAUtil.write(f, serial, false)).intValue());
+			assertEquals(4, assertThrowsNoException(() -> MCAUtil.write(f, parallel, false, executor)).intValue());
+			assertEquals(calculateFileMD5(serial), calculateFileMD5(parallel));
+
+			// chunks of lazily read files are parsed on the executor, evicted chunks included
+			File source = copyResourceToTmp("r.2.2.mca");
+			File expected = getNewTmpFile("r.2.2.mca");
+			assertEquals(3, assertThrowsNoException(() -> MCAUtil.write(MCAUtil.read(source), expected, false)).intValue());
+			for (int cacheSize : new int[]{0, 1}) {
+				MCAFile lazy = assertThrowsNoException(() -> MCAUtil.readLazily(source, ALL_DATA, cacheSize));
+				Chunk resident = lazy.getChunk(512);
+				File actual = getNewTmpFile("r.2.2.mca");
+				assertEquals(3, assertThrowsNoException(() -> MCAUtil.write(lazy, actual, false, executor)).intValue());
+				assertEquals(calculateFileMD5(expected), calculateFileMD5(actual));
+				assertSame(resident, lazy.getChunk(512));
+			}
+			ByteBuffer broken = ByteBuffer.allocate(8192);
+			broken.putInt(0, (2 << 8) | 1);
+			MCAFile b = new MCAFile(2, 2);
+			assertThrowsNoException(() -> b.deserializeLazily(broken, ALL_DATA, 1));
+			assertThrowsException(() -> {
+				try (RandomAccessFile raf = new RandomAccessFile(getNewTmpFile("r.2.2.mca"), "rw")) {
+					b.serialize(raf, false, executor);
+				}
+			}, EOFException.class);
+
+			MCAFile partial = assertThrowsNoException(() -> MCAUtil.read(serial, BLOCK_STATES));
+			assertThrowsException(() -> MCAUtil.write(partial, getNewTmpFile("r.2.2.mca"), false, executor), UnsupportedOperationException.class);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testCompressionSettings() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+			File defaults = getNewTmpFile("r.2.2.mca");
+			assertThrowsNoException(() -> MCAUtil.write(f, defaults, false));
+
+			f.setCompression(Deflater.NO_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+			assertEquals(Deflater.NO_COMPRESSION, f.getCompressionLevel());
+			File serial = getNewTmpFile("r.2.2.mca");
+			File parallel = getNewTmpFile("r.2.2.mca");
+			assertEquals(3, assertThrowsNoException(() -> MCAUtil.write(f, serial, false)).intValue());
+			assertEquals(3, assertThrowsNoException(() -> MCAUtil.write(f, parallel, false, executor)).intValue());
+			assertEquals(calculateFileMD5(serial), calculateFileMD5(parallel));
+			assertTrue(serial.length() > defaults.length());
+
+			MCAFile stored = assertThrowsNoException(() -> MCAUtil.read(serial));
+			for (int i : new int[]{0, 512, 1023}) {
+				assertEquals(f.getChunk(i).updateHandle(0, 0), stored.getChunk(i).updateHandle(0, 0));
+			}
+
+			assertThrowsRuntimeException(() -> f.setCompression(10, Deflater.DEFAULT_STRATEGY), IllegalArgumentException.class);
+			assertThrowsRuntimeException(() -> f.setCompression(Deflater.BEST_SPEED, 3), IllegalArgumentException.class);
+			assertEquals(Deflater.NO_COMPRESSION, f.getCompressionLevel());
+			assertEquals(Deflater.DEFAULT_STRATEGY, f.getCompressionStrategy());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private Chunk createChunkWithPos() {
 		CompoundTag data = new CompoundTag();
 		CompoundTag level = new CompoundTag();
@@ -233,6 +493,70 @@ public class MCAFileTest extends MCATestCase {
 		assertEquals(256, s.updateHandle(0).getLongArray("BlockStates").length);
 	}
 
+	public void testCleanupPaletteRemap() {
+		for (int dataVersion : new int[]{1628, 2566}) {
+			int[] indices = new int[4096];
+			Section s = createSection(dataVersion, 40, indices, dataVersion);
+			long[] blockStates = s.getBlockStates();
+			s.cleanupPaletteAndBlockStates();
+			assertSame(blockStates, s.getBlockStates());
+
+			CompoundTag[] before = new CompoundTag[4096];
+			for (int i = 0; i < 4096; i++) {
+				//only keep every third palette entry
+				indices[i] -= indices[i] % 3;
+				before[i] = s.getPalette().get(indices[i]);
+			}
+			s.setPaletteIndices(indices);
+			s.cleanupPaletteAndBlockStates();
+			assertEquals(14, s.getPalette().size());
+			assertEquals(4, s.getBitsPerIndex());
+			for (int i = 0; i < 4096; i++) {
+				assertEquals(before[i], s.getBlockStateAt(i & 0xF, i >> 8, i >> 4 & 0xF));
+			}
+			assertEquals(13, s.addToPalette(block("minecraft:block_39")));
+			assertEquals(14, s.addToPalette(block("minecraft:block_40")));
+		}
+	}
+
+	public void testBatch() {
+		MCAFile single = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		MCAFile batch = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		Section section = batch.getChunk(0, 0).getSection(0);
+		long[] blockStates = section.getBlockStates();
+		batch.beginBatch();
+		Random random = new Random(14);
+		for (int i = 0; i < 5000; i++) {
+			int x = random.nextInt(48), y = random.nextInt(32), z = random.nextInt(16);
+			CompoundTag state = block("minecraft:" + random.nextInt(40));
+			single.setBlockStateAt(x, y, z, state, false);
+			batch.setBlockStateAt(x, y, z, state, false);
+			assertEquals(state, batch.getBlockStateAt(x, y, z));
+		}
+		assertSame(blockStates, section.getBlockStates());
+		assertTrue(section.isBatching());
+		batch.commitBatch();
+		assertFalse(section.isBatching());
+		single.cleanupPalettesAndBlockStates();
+		for (int x = 0; x < 48; x++) {
+			for (int y = 0; y < 32; y++) {
+				for (int z = 0; z < 16; z++) {
+					assertEquals(single.getBlockStateAt(x, y, z), batch.getBlockStateAt(x, y, z));
+				}
+			}
+		}
+		assertEquals(single.getChunk(0, 0).getSection(0).getPalette().size(), section.getPalette().size());
+		assertEquals(single.getChunk(2, 0).updateHandle(2, 0), batch.getChunk(2, 0).updateHandle(2, 0));
+
+		//updateHandle commits pending changes
+		batch.beginBatch();
+		batch.setBlockStateAt(0, 0, 0, block("minecraft:batched"), false);
+		CompoundTag handle = batch.getChunk(0, 0).updateHandle(0, 0);
+		assertFalse(section.isBatching());
+		Section reloaded = new Section(handle.getCompoundTag("Level").getListTag("Sections").asCompoundTagList().get(0), 1628);
+		assertEquals(block("minecraft:batched"), reloaded.getBlockStateAt(0, 0, 0));
+	}
+
 	public void testSetBlockDataAt() {
 		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
 		Section section = f.getChunk(0, 0).getSection(0);
@@ -299,6 +623,87 @@ public class MCAFileTest extends MCATestCase {
 		assertEquals(256, sss.get(0).getLongArray("BlockStates").length);
 	}
 
+	public void testPaletteIndices() {
+		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		Section real = f.getChunk(0).getSection(0);
+		int[] unpacked = real.getPaletteIndices();
+		for (int i = 0; i < 4096; i++) {
+			assertEquals(real.getPaletteIndex(i), unpacked[i]);
+		}
+		long[] before = real.getBlockStates().clone();
+		real.setPaletteIndices(unpacked);
+		assertTrue(Arrays.equals(before, real.getBlockStates()));
+
+		int[][] configs = {{1628, 5}, {1628, 17}, {1628, 300}, {1628, 2000}, {2566, 5}, {2566, 33}, {2566, 1500}, {2566, 4096}};
+		for (int[] config : configs) {
+			int[] indices = new int[4096];
+			Section s = createSection(config[0], config[1], indices, config[1]);
+			long[] packed = s.getBlockStates().clone();
+			assertTrue(Arrays.equals(indices, s.getPaletteIndices()));
+			int[] buffer = new int[5000];
+			assertSame(buffer, s.getPaletteIndices(buffer));
+			assertTrue(Arrays.equals(indices, Arrays.copyOf(buffer, 4096)));
+			s.setPaletteIndices(indices);
+			assertTrue(Arrays.equals(packed, s.getBlockStates()));
+		}
+
+		Section s = createSection(2566, 5, new int[4096], 0);
+		assertThrowsRuntimeException(() -> s.getPaletteIndices(new int[4095]), IllegalArgumentException.class);
+		assertThrowsRuntimeException(() -> s.setPaletteIndices(new int[4095]), IllegalArgumentException.class);
+		int[] invalid = new int[4096];
+		invalid[17] = 5;
+		assertThrowsRuntimeException(() -> s.setPaletteIndices(invalid), IllegalArgumentException.class);
+	}
+
+	public void testPaletteIndexLayout() {
+		int[][] configs = {{1628, 5}, {1628, 17}, {1628, 300}, {1628, 2000}, {2566, 5}, {2566, 33}, {2566, 1500}, {2566, 4096}};
+		for (int[] config : configs) {
+			int[] indices = new int[4096];
+			Section s = createSection(config[0], config[1], indices, config[1]);
+			for (int i = 0; i < 4096; i++) {
+				assertEquals(indices[i], s.getPaletteIndex(i));
+			}
+			Random random = new Random(config[1]);
+			for (int i = 0; i < 4096; i++) {
+				indices[i] = random.nextInt(config[1]);
+				s.setPaletteIndex(i, indices[i], s.getBlockStates());
+			}
+			assertTrue(Arrays.equals(indices, s.getPaletteIndices()));
+		}
+
+		// 2048 and 2049 palette entries need 11 and 12 bits, which have the same padded array length
+		int[] indices = new int[4096];
+		Section s = createSection(2566, 2048, indices, 11);
+		assertEquals(11, s.getBitsPerIndex());
+		CompoundTag[] before = new CompoundTag[4096];
+		for (int i = 0; i < 4096; i++) {
+			before[i] = s.getBlockStateAt(i & 0xF, i >> 8, i >> 4 & 0xF);
+		}
+		s.setBlockStateAt(1, 2, 3, block("minecraft:block_2048"), false);
+		before[s.getBlockIndex(1, 2, 3)] = block("minecraft:block_2048");
+		for (int i = 0; i < 4096; i++) {
+			assertEquals(before[i], s.getBlockStateAt(i & 0xF, i >> 8, i >> 4 & 0xF));
+		}
+		assertEquals(Section.bitsForPaletteSize(s.getPalette().size()), s.getBitsPerIndex());
+		assertEquals(820, s.getBlockStates().length);
+
+		s.setBlockStates(new long[342]);
+		assertEquals(5, s.getBitsPerIndex());
+		assertThrowsRuntimeException(() -> s.setBlockStates(new long[343]), IllegalArgumentException.class);
+
+		// a section with a corrupt BlockStates length can be loaded, it only fails when its block states are accessed
+		for (int dataVersion : new int[]{1628, 2566}) {
+			CompoundTag root = createSection(dataVersion, 5, new int[4096], 0).updateHandle(0);
+			root.putLongArray("BlockStates", new long[100]);
+			Section corrupt = assertThrowsNoRuntimeException(() -> new Section(root, dataVersion));
+			assertEquals(100, corrupt.getBlockStates().length);
+			assertThrowsRuntimeException(() -> corrupt.getPaletteIndex(0), IllegalArgumentException.class);
+			assertThrowsRuntimeException(() -> corrupt.getPaletteIndices(), IllegalArgumentException.class);
+			corrupt.setBlockStates(new long[dataVersion < 2527 ? 256 : 342]);
+			assertEquals(0, corrupt.getPaletteIndex(0));
+		}
+	}
+
 	public void testGetBlockDataAt() {
 		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
 		assertEquals(block("minecraft:bedrock"), f.getBlockStateAt(0, 0, 0));
@@ -313,6 +718,26 @@ public class MCAFileTest extends MCATestCase {
 		assertEquals("mobs_spawned", f.getChunk(0, 0).getStatus());
 	}
 
+	public void testChunkStringCaches() {
+		File file = copyResourceToTmp("r.2.2.mca");
+		MCAFile a = assertThrowsNoException(() -> MCAUtil.read(file));
+		MCAFile b = assertThrowsNoException(() -> MCAUtil.read(file));
+		assertEquals(a.getChunk(0).getStatus(), b.getChunk(0).getStatus());
+		assertNotSame(a.getChunk(0).getStatus(), b.getChunk(0).getStatus());
+
+		StringCache cache = new StringCache(256);
+		Chunk.setStringCaches(cache, cache);
+		try {
+			MCAFile c = assertThrowsNoException(() -> MCAUtil.read(file));
+			MCAFile d = assertThrowsNoException(() -> MCAUtil.read(file));
+			assertEquals("mobs_spawned", c.getChunk(0).getStatus());
+			assertSame(c.getChunk(0).getStatus(), d.getChunk(0).getStatus());
+			assertSame(c.getChunk(0).getStatus(), c.getChunk(512).getStatus());
+		} finally {
+			Chunk.setStringCaches(null, null);
+		}
+	}
+
 	public void testSetChunkStatus() {
 		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
 		assertThrowsNoRuntimeException(() -> f.getChunk(0, 0).setStatus("base"));
@@ -326,6 +751,25 @@ public class MCAFileTest extends MCATestCase {
 		assertThrowsRuntimeException(() -> new Chunk(t), IllegalArgumentException.class);
 	}
 
+	public void testChunkFromRandomAccessFile() {
+		File file = copyResourceToTmp("r.2.2.mca");
+		MCAFile mapped = assertThrowsNoException(() -> MCAUtil.read(file));
+		assertThrowsNoException(() -> {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				for (int index : new int[]{0, 512, 1023}) {
+					raf.seek(index * 4);
+					raf.seek((raf.readInt() >>> 8) * 4096L + 4);
+					Chunk c = new Chunk(0);
+					c.deserialize(raf, ALL_DATA);
+					assertEquals(mapped.getChunk(index).updateHandle(0, 0), c.updateHandle(0, 0));
+				}
+				// closing the decompressing stream does not close the file
+				raf.seek(4096);
+				assertEquals(mapped.getChunk(0).getLastMCAUpdate(), raf.readInt());
+			}
+		});
+	}
+
 	public void testChunkInvalidCompressionType() {
 		assertThrowsException(() -> {
 			try (RandomAccessFile raf = new RandomAccessFile(getResourceFile("invalid_compression.dat"), "r")) {
@@ -416,6 +860,58 @@ public class MCAFileTest extends MCATestCase {
 		}
 	}
 
+	public void testChunkFromView() {
+		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		CompoundTag data = f.getChunk(0).updateHandle(0, 0);
+		NBTView view = assertThrowsNoException(() -> NBTView.of(serialize(data)));
+		assertEquals(data.getInt("DataVersion"), view.getInt("DataVersion"));
+		assertEquals(data.getCompoundTag("Level").getString("Status"), view.get("Level").getString("Status"));
+
+		Chunk full = new Chunk(view, ALL_DATA);
+		assertEquals(data, full.updateHandle(0, 0));
+		Chunk states = new Chunk(view, BLOCK_STATES);
+		assertEquals(f.getChunk(0).getDataVersion(), states.getDataVersion());
+		assertNull(states.getEntities());
+		assertNull(states.getSection(0).getSkyLight());
+		assertTrue(Arrays.equals(f.getChunk(0).getSection(0).getBlockStates(), states.getSection(0).getBlockStates()));
+		assertThrowsRuntimeException(() -> new Chunk(view.get("Level").get("Sections"), ALL_DATA), ClassCastException.class);
+	}
+
+	public void testLoadFlagsFilter() {
+		assertNull(Chunk.createFilter(ALL_DATA));
+		PathFilter filter = Chunk.createFilter(BLOCK_STATES);
+		assertNotNull(filter.getChild("DataVersion"));
+		PathFilter level = filter.getChild("Level");
+		assertNotNull(level);
+		assertNull(level.getChild("Entities"));
+		assertNull(level.getChild("Structures"));
+		PathFilter sections = level.getChild("Sections");
+		assertNotNull(sections.getChild("BlockStates"));
+		assertNotNull(sections.getChild("Palette"));
+		assertNull(sections.getChild("SkyLight"));
+		assertNull(Chunk.createFilter(ENTITIES).getChild("Level").getChild("Sections"));
+
+		MCAFile full = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		MCAFile states = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca"), BLOCK_STATES));
+		for (int i = 0; i < 1024; i++) {
+			Chunk a = full.getChunk(i);
+			Chunk b = states.getChunk(i);
+			assertEquals(a == null, b == null);
+			if (a == null) {
+				continue;
+			}
+			assertEquals(a.getDataVersion(), b.getDataVersion());
+			assertEquals(a.getStatus(), b.getStatus());
+			for (int y = 0; y < 16; y++) {
+				assertEquals(a.getSection(y) == null, b.getSection(y) == null);
+				if (a.getSection(y) != null) {
+					assertTrue(Arrays.equals(a.getSection(y).getBlockStates(), b.getSection(y).getBlockStates()));
+					assertNull(b.getSection(y).getSkyLight());
+				}
+			}
+		}
+	}
+
 	public void test1_15GetBiomeAt() throws IOException {
 		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.0.0.mca")));
 		assertEquals(162, f.getBiomeAt(31, 0, 63));
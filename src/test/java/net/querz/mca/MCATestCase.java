@@ -3,6 +3,7 @@ package net.querz.mca;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.ListTag;
 import net.querz.NBTTestCase;
+import java.util.Random;
 
 public abstract class MCATestCase extends NBTTestCase {
 
@@ -42,6 +43,45 @@ public abstract class MCATestCase extends NBTTestCase {
 		return l;
 	}
 
+	/**
+	 * Creates a section with a palette of {@code paletteSize} blocks and random palette indices,
+	 * packed independently of {@link Section} in the layout of {@code dataVersion}.
+	 * */
+	public Section createSection(int dataVersion, int paletteSize, int[] indices, long seed) {
+		Random random = new Random(seed);
+		ListTag<CompoundTag> palette = new ListTag<>(CompoundTag.class);
+		palette.add(block("minecraft:air"));
+		for (int i = 1; i < paletteSize; i++) {
+			palette.add(block("minecraft:block_" + i));
+		}
+		int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+		long[] blockStates;
+		if (dataVersion < 2527) {
+			blockStates = new long[bits * 64];
+			for (int i = 0; i < 4096; i++) {
+				indices[i] = random.nextInt(paletteSize);
+				for (int b = 0; b < bits; b++) {
+					if ((indices[i] & 1 << b) != 0) {
+						int bit = i * bits + b;
+						blockStates[bit / 64] |= 1L << bit % 64;
+					}
+				}
+			}
+		} else {
+			int perLong = 64 / bits;
+			blockStates = new long[(int) Math.ceil(4096D / perLong)];
+			for (int i = 0; i < 4096; i++) {
+				indices[i] = random.nextInt(paletteSize);
+				blockStates[i / perLong] |= (long) indices[i] << i % perLong * bits;
+			}
+		}
+		CompoundTag root = new CompoundTag();
+		root.putByte("Y", (byte) 0);
+		root.put("Palette", palette);
+		root.putLongArray("BlockStates", blockStates);
+		return new Section(root, dataVersion);
+	}
+
 	public static String longToBinaryString(long n) {
 		StringBuilder s = new StringBuilder(Long.toBinaryString(n));
 		for (int i = s.length(); i < 64; i++) {
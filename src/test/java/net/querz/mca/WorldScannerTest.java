@@ -0,0 +1,253 @@
+package net.querz.mca;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WorldScannerTest extends MCATestCase {
+
+	private File world;
+
+	@Override
+	public void tearDown() throws Exception {
+		if (world != null) {
+			deleteRecursively(world);
+		}
+		super.tearDown();
+	}
+
+	public void testScan() throws IOException {
+		File regionDir = createWorld();
+		MCAFile r22 = MCAUtil.read(new File(regionDir, "r.2.2.mca"));
+		MCAFile r00 = MCAUtil.read(new File(regionDir, "r.0.0.mca"));
+
+		Map<String, Chunk> chunks = new ConcurrentHashMap<>();
+		Map<String, Integer> scanned = new ConcurrentHashMap<>();
+		Map<String, Exception> failed = new ConcurrentHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			WorldScanner scanner = new WorldScanner(LoadFlags.ALL_DATA, executor, 2);
+			long visited = scanner.scan(world, (x, z, c) -> assertNull(chunks.put(x + "," + z, c)), listener(scanned, failed));
+			assertEquals(chunks.size(), visited);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(2, scanned.size());
+		assertEquals(countChunks(r22), (int) scanned.get("r.2.2.mca"));
+		assertEquals(countChunks(r00), (int) scanned.get("r.0.0.mca"));
+		assertEquals(countChunks(r22) + countChunks(r00), chunks.size());
+		for (int i = 0; i < 1024; i++) {
+			if (r22.getChunk(i) != null) {
+				Chunk c = chunks.get((64 + (i & 31)) + "," + (64 + (i >> 5)));
+				assertNotNull(c);
+				assertEquals(r22.getChunk(i).getInhabitedTime(), c.getInhabitedTime());
+				assertEquals(r22.getChunk(i).getLastMCAUpdate(), c.getLastMCAUpdate());
+			}
+		}
+
+		assertEquals(2, failed.size());
+		assertTrue(failed.get("r.1.1.mca") instanceof IOException);
+		assertTrue(failed.get("r.a.b.mca") instanceof IllegalArgumentException);
+	}
+
+	public void testScanRegionDirectory() throws IOException {
+		File regionDir = createWorld();
+		AtomicInteger visited = new AtomicInteger();
+		Map<String, Integer> scanned = new ConcurrentHashMap<>();
+		Map<String, Exception> failed = new ConcurrentHashMap<>();
+		// runs every region on the calling thread
+		WorldScanner scanner = new WorldScanner(LoadFlags.BIOMES, Runnable::run, 1);
+		long result = scanner.scan(regionDir, (x, z, c) -> {
+			assertNull(c.getEntities());
+			assertNotNull(c.getBiomes());
+			visited.incrementAndGet();
+		}, listener(scanned, failed));
+		assertEquals(visited.get(), result);
+		assertEquals(2, scanned.size());
+		assertEquals(2, failed.size());
+	}
+
+	public void testVisitorFailure() throws IOException {
+		createWorld();
+		Map<String, Integer> scanned = new ConcurrentHashMap<>();
+		Map<String, Exception> failed = new ConcurrentHashMap<>();
+		WorldScanner scanner = new WorldScanner(LoadFlags.ALL_DATA, Runnable::run, 1);
+		long result = scanner.scan(world, (x, z, c) -> {
+			if (x >= 64) {
+				throw new IOException("failed to process chunk");
+			}
+		}, listener(scanned, failed));
+		assertEquals((long) scanned.get("r.0.0.mca"), result);
+		assertEquals(1, scanned.size());
+		assertEquals("failed to process chunk", failed.get("r.2.2.mca").getMessage());
+		assertEquals(3, failed.size());
+
+		// chunks visited before the region failed are counted
+		AtomicInteger visited = new AtomicInteger();
+		scanned.clear();
+		failed.clear();
+		result = scanner.scan(world, (x, z, c) -> {
+			if (x >= 64 && visited.incrementAndGet() == 2) {
+				throw new IOException("failed to process chunk");
+			}
+		}, listener(scanned, failed));
+		assertEquals(scanned.get("r.0.0.mca") + 1, result);
+		assertTrue(failed.containsKey("r.2.2.mca"));
+	}
+
+	public void testListenerFailure() throws Exception {
+		createWorld();
+		Map<String, Exception> failed = new ConcurrentHashMap<>();
+		AtomicInteger scanned = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			WorldScanner scanner = new WorldScanner(LoadFlags.ALL_DATA, executor, 2);
+			assertThrowsRuntimeException(() -> {
+				try {
+					scanner.scan(world, (x, z, c) -> {}, new WorldScanner.Listener() {
+						@Override
+						public void regionScanned(File region, int chunks) {
+							scanned.incrementAndGet();
+							throw new IllegalStateException("listener failed");
+						}
+
+						@Override
+						public void regionFailed(File region, Exception ex) {
+							failed.put(region.getName(), ex);
+						}
+					});
+				} catch (IOException ex) {
+					fail(ex.getMessage());
+				}
+			}, IllegalStateException.class);
+		} finally {
+			executor.shutdown();
+		}
+		// the scan continues after a listener failure and a region that has been scanned is not reported as failed as well
+		assertEquals(3, scanned.get());
+		assertEquals(2, failed.size());
+		assertTrue(failed.containsKey("r.1.1.mca"));
+		assertTrue(failed.containsKey("r.a.b.mca"));
+	}
+
+	public void testInterrupt() throws Exception {
+		createWorld();
+		AtomicBoolean returned = new AtomicBoolean();
+		AtomicBoolean late = new AtomicBoolean();
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicReference<Exception> thrown = new AtomicReference<>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			WorldScanner scanner = new WorldScanner(LoadFlags.BIOMES, executor, 2);
+			Thread scan = new Thread(() -> {
+				try {
+					scanner.scan(world, (x, z, c) -> {
+						late.compareAndSet(false, returned.get());
+						started.countDown();
+						try {
+							Thread.sleep(50);
+						} catch (InterruptedException ex) {
+							throw new IOException(ex);
+						}
+					}, new WorldScanner.Listener() {
+						@Override
+						public void regionScanned(File region, int chunks) {
+							late.compareAndSet(false, returned.get());
+						}
+
+						@Override
+						public void regionFailed(File region, Exception ex) {
+							late.compareAndSet(false, returned.get());
+						}
+					});
+				} catch (Exception ex) {
+					thrown.set(ex);
+				} finally {
+					returned.set(true);
+				}
+			});
+			scan.start();
+			assertTrue(started.await(30, TimeUnit.SECONDS));
+			scan.interrupt();
+			scan.join(30000);
+			assertFalse(scan.isAlive());
+			assertTrue(thrown.get() instanceof InterruptedIOException);
+			// regions that were still being read have finished before scan returned
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+			assertFalse(late.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public void testScanMissingDirectory() {
+		WorldScanner scanner = new WorldScanner(LoadFlags.ALL_DATA, Runnable::run, 1);
+		assertThrowsException(() -> scanner.scan(getNewTmpFile("missing"), (x, z, c) -> {}, listener(new ConcurrentHashMap<>(), new ConcurrentHashMap<>())), NoSuchFileException.class, false);
+		assertThrowsRuntimeException(() -> new WorldScanner(LoadFlags.ALL_DATA, Runnable::run, 0), IllegalArgumentException.class);
+		assertThrowsRuntimeException(() -> new WorldScanner(LoadFlags.ALL_DATA, null, 1), NullPointerException.class);
+	}
+
+	private File createWorld() throws IOException {
+		world = getNewTmpFile("world");
+		File regionDir = new File(world, "region");
+		assertTrue(regionDir.mkdirs());
+		Files.copy(getResourceFile("r.2.2.mca").toPath(), new File(regionDir, "r.2.2.mca").toPath());
+		Files.copy(getResourceFile("r.0.0.mca").toPath(), new File(regionDir, "r.0.0.mca").toPath());
+		// too small to contain a header
+		Files.write(new File(regionDir, "r.1.1.mca").toPath(), new byte[100]);
+		Files.write(new File(regionDir, "r.a.b.mca").toPath(), new byte[0]);
+		// empty region files are skipped, other files are ignored
+		Files.write(new File(regionDir, "r.3.3.mca").toPath(), new byte[0]);
+		Files.write(new File(regionDir, "r.4.4.mca.tmp").toPath(), new byte[100]);
+		return regionDir;
+	}
+
+	private WorldScanner.Listener listener(Map<String, Integer> scanned, Map<String, Exception> failed) {
+		return new WorldScanner.Listener() {
+			@Override
+			public void regionScanned(File region, int chunks) {
+				if (chunks > 0) {
+					scanned.put(region.getName(), chunks);
+				}
+			}
+
+			@Override
+			public void regionFailed(File region, Exception ex) {
+				failed.put(region.getName(), ex);
+			}
+		};
+	}
+
+	private int countChunks(MCAFile mcaFile) {
+		int count = 0;
+		for (int i = 0; i < 1024; i++) {
+			if (mcaFile.getChunk(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void deleteRecursively(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteRecursively(f);
+			}
+		}
+		file.delete();
+	}
+}
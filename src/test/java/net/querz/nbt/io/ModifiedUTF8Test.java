@@ -0,0 +1,90 @@
+package net.querz.nbt.io;
+
+import net.querz.NBTTestCase;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.Tag;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+public class ModifiedUTF8Test extends NBTTestCase {
+
+	private static final String[] STRINGS = {
+		"", "minecraft:stone", "\0", "a\0b", "äöü", "ascii prefix ß", "€￿ࠀ߿",
+		"😀 surrogates", new String(new char[1000]).replace('\0', 'x') + "Ā"
+	};
+
+	public void testRoundTrip() {
+		for (String s : STRINGS) {
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			assertThrowsNoException(() -> new DataOutputStream(expected).writeUTF(s));
+			ByteArrayOutputStream actual = new ByteArrayOutputStream();
+			NBTOutputStream out = new NBTOutputStream(actual);
+			assertThrowsNoException(() -> out.writeString(s));
+			assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+
+			NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(actual.toByteArray()));
+			assertEquals(s, assertThrowsNoException(in::readString));
+			StringCache cache = new StringCache(16);
+			NBTInputStream cached = new NBTInputStream(new ByteArrayInputStream(actual.toByteArray()), cache, cache);
+			assertEquals(s, assertThrowsNoException(cached::readKey));
+		}
+	}
+
+	public void testRawNullByte() {
+		// readUTF accepts an unencoded 0 byte, so must we
+		byte[] data = {0, 3, 'a', 0, 'b'};
+		assertEquals("a\0b", assertThrowsNoException(() -> new NBTInputStream(new ByteArrayInputStream(data)).readString()));
+	}
+
+	public void testCacheHit() {
+		byte[] data = {0, 4, 'N', 'a', 'm', 'e', 0, 4, 'N', 'a', 'm', 'e'};
+		StringCache cache = new StringCache(16);
+		NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(data), cache, null);
+		String first = assertThrowsNoException(in::readKey);
+		assertEquals("Name", first);
+		assertSame(first, assertThrowsNoException(in::readKey));
+		assertSame(first, cache.deduplicate(new String("Name")));
+	}
+
+	public void testMalformed() {
+		byte[][] malformed = {
+			{0, 1, (byte) 0x80},
+			{0, 1, (byte) 0xC3},
+			{0, 2, (byte) 0xE2, (byte) 0x82},
+			{0, 2, (byte) 0xC3, 'a'},
+			{0, 1, (byte) 0xF0}
+		};
+		for (byte[] data : malformed) {
+			assertThrowsException(() -> new NBTInputStream(new ByteArrayInputStream(data)).readString(), UTFDataFormatException.class);
+			assertThrowsException(() -> new DataInputStream(new ByteArrayInputStream(data)).readUTF(), UTFDataFormatException.class);
+		}
+	}
+
+	public void testTooLong() {
+		NBTOutputStream out = new NBTOutputStream(new ByteArrayOutputStream());
+		assertThrowsException(() -> out.writeString(new String(new char[65536]).replace('\0', 'x')), UTFDataFormatException.class);
+		assertThrowsException(() -> out.writeString(new String(new char[40000]).replace('\0', 'ä')), UTFDataFormatException.class);
+		assertThrowsNoException(() -> out.writeString(new String(new char[65535]).replace('\0', 'x')));
+	}
+
+	public void testTagRoundTrip() {
+		CompoundTag tag = new CompoundTag();
+		for (String s : STRINGS) {
+			tag.putString(s, s);
+		}
+		byte[] data = serialize(tag);
+		ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		assertThrowsNoException(() -> {
+			DataOutputStream dos = new DataOutputStream(plain);
+			dos.writeByte(tag.getID());
+			dos.writeUTF("");
+			tag.write(dos, Tag.DEFAULT_MAX_DEPTH);
+		});
+		assertTrue(Arrays.equals(plain.toByteArray(), data));
+		assertEquals(tag, deserialize(data));
+	}
+}
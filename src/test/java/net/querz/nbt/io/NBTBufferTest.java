@@ -0,0 +1,76 @@
+package net.querz.nbt.io;
+
+import net.querz.NBTTestCase;
+import net.querz.io.MaxDepthReachedException;
+import net.querz.mca.MCAFile;
+import net.querz.mca.MCAUtil;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.Tag;
+import java.io.EOFException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class NBTBufferTest extends NBTTestCase {
+
+	public void testRoundTrip() {
+		CompoundTag tag = createTestTag();
+		byte[] data = serialize(tag);
+
+		NBTBufferWriter writer = new NBTBufferWriter(8);
+		assertThrowsNoException(() -> writer.writeTag(tag, Tag.DEFAULT_MAX_DEPTH));
+		ByteBuffer written = writer.getBuffer();
+		assertTrue(Arrays.equals(data, Arrays.copyOf(written.array(), written.position())));
+
+		ByteBuffer heap = ByteBuffer.wrap(data);
+		NamedTag read = assertThrowsNoException(() -> new NBTBufferReader(heap).readTag(Tag.DEFAULT_MAX_DEPTH));
+		assertEquals("", read.getName());
+		assertEquals(tag, read.getTag());
+		assertFalse(heap.hasRemaining());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 4);
+		assertThrowsNoException(() -> new NBTBufferWriter(direct).writeTag(new NamedTag("name", tag), Tag.DEFAULT_MAX_DEPTH));
+		assertThrowsException(() -> new NBTBufferWriter(direct).writeTag(tag, Tag.DEFAULT_MAX_DEPTH), BufferOverflowException.class);
+		direct.flip();
+		read = assertThrowsNoException(() -> new NBTBufferReader(direct).readTag(Tag.DEFAULT_MAX_DEPTH));
+		assertEquals("name", read.getName());
+		assertEquals(tag, read.getTag());
+	}
+
+	public void testChunk() {
+		MCAFile mcaFile = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		CompoundTag chunk = mcaFile.getChunk(0).updateHandle(0, 0);
+		byte[] data = serialize(chunk);
+		NBTBufferWriter writer = new NBTBufferWriter(ByteBuffer.allocate(data.length));
+		assertThrowsNoException(() -> writer.writeTag(chunk, Tag.DEFAULT_MAX_DEPTH));
+		assertTrue(Arrays.equals(data, writer.getBuffer().array()));
+		StringCache cache = new StringCache(64);
+		NBTBufferReader reader = new NBTBufferReader(ByteBuffer.wrap(data), cache, cache);
+		assertEquals(chunk, assertThrowsNoException(() -> reader.readTag(Tag.DEFAULT_MAX_DEPTH)).getTag());
+	}
+
+	public void testInvalid() {
+		byte[] data = serialize(createTestTag());
+		for (int length : new int[]{0, 1, 3, data.length / 2, data.length - 1}) {
+			ByteBuffer truncated = ByteBuffer.wrap(data, 0, length);
+			assertThrowsException(() -> new NBTBufferReader(truncated).readTag(Tag.DEFAULT_MAX_DEPTH), EOFException.class);
+		}
+		// a long array claiming more elements than there are bytes left
+		byte[] huge = {12, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0};
+		assertThrowsException(() -> new NBTBufferReader(ByteBuffer.wrap(huge)).readRawTag(Tag.DEFAULT_MAX_DEPTH), EOFException.class);
+
+		CompoundTag root = new CompoundTag();
+		CompoundTag c = root;
+		for (int i = 0; i < Tag.DEFAULT_MAX_DEPTH + 1; i++) {
+			CompoundTag child = new CompoundTag();
+			c.put("c", child);
+			c = child;
+		}
+		assertThrowsException(() -> new NBTBufferWriter(16).writeTag(root, Tag.DEFAULT_MAX_DEPTH), MaxDepthReachedException.class);
+		NBTBufferWriter writer = new NBTBufferWriter(16);
+		assertThrowsNoException(() -> writer.writeTag(root, Tag.DEFAULT_MAX_DEPTH + 1));
+		ByteBuffer deep = writer.getBuffer();
+		deep.flip();
+		assertThrowsException(() -> new NBTBufferReader(deep).readTag(Tag.DEFAULT_MAX_DEPTH), MaxDepthReachedException.class);
+	}
+}
@@ -0,0 +1,144 @@
+package net.querz.nbt.io;
+
+import net.querz.NBTTestCase;
+import net.querz.mca.MCAFile;
+import net.querz.mca.MCAUtil;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.PathFilter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class NBTIndexTest extends NBTTestCase {
+
+	private CompoundTag chunk() {
+		MCAFile f = assertThrowsNoException(() -> MCAUtil.read(copyResourceToTmp("r.2.2.mca")));
+		return f.getChunk(0).updateHandle(0, 0);
+	}
+
+	public void testBuild() {
+		CompoundTag chunk = chunk();
+		byte[] data = serialize(chunk);
+		NBTIndex index = assertThrowsNoException(() -> NBTIndex.build(data));
+		assertEquals(data.length, index.getDataLength());
+		assertEquals(CompoundTag.ID, index.get("").getID());
+		assertEquals(3, index.get("").getOffset());
+		assertEquals(data.length - 3, index.get("").getLength());
+		assertNull(index.get("Level.Missing"));
+
+		ListTag<CompoundTag> sections = chunk.getCompoundTag("Level").getListTag("Sections").asCompoundTagList();
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		for (int i = 0; i < sections.size(); i++) {
+			String path = "Level.Sections[" + i + "]";
+			NBTIndex.Entry e = index.get(path + ".BlockStates");
+			if (!sections.get(i).containsKey("BlockStates")) {
+				assertNull(e);
+				continue;
+			}
+			assertEquals(LongArrayTag.ID, e.getID());
+			assertEquals(4 + 8 * sections.get(i).getLongArray("BlockStates").length, e.getLength());
+			NBTView view = assertThrowsNoException(() -> index.view(buffer, path + ".BlockStates"));
+			assertTrue(Arrays.equals(sections.get(i).getLongArray("BlockStates"), view.toLongArray()));
+			assertEquals(sections.get(i), assertThrowsNoException(() -> index.view(buffer, path)).toTag());
+			assertNotNull(index.get(path + ".Palette[0].Name"));
+		}
+		assertEquals(0, buffer.position());
+		assertEquals(chunk.getInt("DataVersion"), assertThrowsNoException(() -> index.view(buffer, "DataVersion")).asInt());
+	}
+
+	public void testFilter() {
+		byte[] data = serialize(chunk());
+		PathFilter filter = new PathFilter().include("DataVersion", "Level.Sections[].BlockStates");
+		NBTIndex index = assertThrowsNoException(() -> NBTIndex.build(ByteBuffer.wrap(data), filter));
+		assertNotNull(index.get("DataVersion"));
+		assertNotNull(index.get("Level.Sections[0].BlockStates"));
+		assertNull(index.get("Level.Sections[0].Palette"));
+		assertNull(index.get("Level.Entities"));
+		NBTIndex full = assertThrowsNoException(() -> NBTIndex.build(data));
+		for (String path : index.paths()) {
+			assertEquals(full.get(path).getOffset(), index.get(path).getOffset());
+			assertEquals(full.get(path).getLength(), index.get(path).getLength());
+		}
+		assertTrue(index.size() < full.size());
+	}
+
+	public void testSidecar() {
+		byte[] data = serialize(chunk());
+		NBTIndex index = assertThrowsNoException(() -> NBTIndex.build(data));
+		ByteArrayOutputStream sidecar = new ByteArrayOutputStream();
+		assertThrowsNoException(() -> index.write(sidecar));
+		NBTIndex read = assertThrowsNoException(() -> NBTIndex.read(new ByteArrayInputStream(sidecar.toByteArray())));
+		assertEquals(index.paths(), read.paths());
+		assertEquals(index.getDataLength(), read.getDataLength());
+		for (String path : index.paths()) {
+			assertEquals(index.get(path).toString(), read.get(path).toString());
+			assertEquals(index.get(path).getID(), read.get(path).getID());
+		}
+
+		byte[] corrupt = sidecar.toByteArray();
+		corrupt[0] = 0;
+		assertThrowsException(() -> NBTIndex.read(new ByteArrayInputStream(corrupt)), IOException.class);
+	}
+
+	public void testReadTag() {
+		CompoundTag chunk = chunk();
+		byte[] data = serialize(chunk);
+		NBTIndex index = assertThrowsNoException(() -> NBTIndex.build(data));
+		File file = getNewTmpFile("chunk.nbt");
+		assertThrowsNoException(() -> {
+			byte[] padded = new byte[data.length + 100];
+			System.arraycopy(data, 0, padded, 100, data.length);
+			Files.write(file.toPath(), padded);
+		});
+		assertThrowsNoException(() -> {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				assertEquals(new IntTag(chunk.getInt("DataVersion")), index.readTag(channel, 100, "DataVersion"));
+				assertEquals(chunk.getCompoundTag("Level").get("Sections"), index.readTag(channel, 100, "Level.Sections"));
+				assertNull(index.readTag(channel, 100, "Missing"));
+				// an index that does not belong to the file
+				assertThrowsException(() -> index.readTag(channel, 99, "Level.Sections"), IOException.class);
+			}
+		});
+	}
+
+	public void testEscapedKeys() {
+		CompoundTag root = new CompoundTag();
+		root.putInt("a.b", 1);
+		CompoundTag a = new CompoundTag();
+		a.putInt("b", 2);
+		root.put("a", a);
+		ListTag<CompoundTag> list = new ListTag<>(CompoundTag.class);
+		list.add(new CompoundTag());
+		root.put("x", list);
+		root.putInt("x[0]", 3);
+		root.putInt("back\\slash", 4);
+		root.putInt("", 5);
+		byte[] data = serialize(root);
+		NBTIndex index = assertThrowsNoException(() -> NBTIndex.build(data));
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+
+		assertEquals("a\\.b", NBTIndex.escape("a.b"));
+		assertEquals("x\\[0\\]", NBTIndex.escape("x[0]"));
+		assertEquals("back\\\\slash", NBTIndex.escape("back\\slash"));
+		assertEquals("plain", NBTIndex.escape("plain"));
+
+		assertEquals(1, assertThrowsNoException(() -> index.view(buffer, NBTIndex.escape("a.b"))).asInt());
+		assertEquals(2, assertThrowsNoException(() -> index.view(buffer, "a.b")).asInt());
+		assertEquals(3, assertThrowsNoException(() -> index.view(buffer, NBTIndex.escape("x[0]"))).asInt());
+		assertEquals(CompoundTag.ID, index.get("x[0]").getID());
+		assertEquals(4, assertThrowsNoException(() -> index.view(buffer, NBTIndex.escape("back\\slash"))).asInt());
+		assertEquals(5, assertThrowsNoException(() -> index.view(buffer, ".")).asInt());
+		assertEquals(CompoundTag.ID, index.get("").getID());
+		// root, 6 entries of the root, b of a and the compound in x
+		assertEquals(9, index.size());
+	}
+}
@@ -0,0 +1,133 @@
+package net.querz.nbt.io;
+
+import net.querz.NBTTestCase;
+import net.querz.io.MaxDepthReachedException;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.NumberTag;
+import net.querz.nbt.tag.PathFilter;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+public class NBTViewTest extends NBTTestCase {
+
+	public void testNavigate() {
+		CompoundTag tag = createTestTag();
+		NBTView view = assertThrowsNoException(() -> NBTView.of(serialize(tag)));
+		assertEquals(CompoundTag.ID, view.getID());
+		assertEquals(tag.keySet().size(), view.keys().size());
+		assertTrue(view.keys().containsAll(tag.keySet()));
+		assertEquals(1, view.getByte("byte"));
+		assertEquals(2, view.getShort("short"));
+		assertEquals(3, view.getInt("int"));
+		assertEquals(4L, view.getLong("long"));
+		assertEquals(5.5f, view.getFloat("float"));
+		assertEquals(6.5, view.getDouble("double"));
+		assertEquals(3.0, view.get("int").asDouble());
+		assertEquals(6L, view.get("double").asLong());
+		assertEquals("sevën", view.getString("string"));
+		assertTrue(Arrays.equals(new byte[]{8, 9}, view.getByteArray("bytes")));
+		assertTrue(Arrays.equals(new int[]{10, 11}, view.getIntArray("ints")));
+		assertTrue(Arrays.equals(new long[]{12, 13}, view.getLongArray("longs")));
+		assertEquals(2, view.get("longs").length());
+		assertEquals(13, view.get("longs").asLongBuffer().get(1));
+		assertEquals(11, view.get("ints").asIntBuffer().get(1));
+		assertThrowsRuntimeException(() -> view.get("bytes").asByteBuffer().put((byte) 0), ReadOnlyBufferException.class);
+
+		assertEquals(0, view.getInt("missing"));
+		assertEquals("", view.getString("missing"));
+		assertNull(view.get("missing"));
+		assertFalse(view.containsKey("missin"));
+		assertTrue(view.containsKey("list"));
+		assertThrowsRuntimeException(() -> view.getInt("long"), ClassCastException.class);
+		assertThrowsRuntimeException(() -> view.get("int").get("x"), ClassCastException.class);
+		assertThrowsRuntimeException(() -> view.get("string").asInt(), ClassCastException.class);
+
+		NBTView list = view.get("list");
+		assertEquals(3, list.size());
+		assertEquals(CompoundTag.ID, list.getElementID());
+		assertEquals("minecraft:pig2", list.get(2).getString("id"));
+		assertEquals(1, list.get(1).getInt("Age"));
+		assertThrowsRuntimeException(() -> list.get(3), IndexOutOfBoundsException.class);
+		assertEquals("bc", view.get("strings").get(1).asString());
+		assertEquals(0, view.get("empty").size());
+		assertEquals(2230, view.get("ké\0y").getInt("DataVersion"));
+	}
+
+	public void testNumberConversions() {
+		// out of the int range, where casting directly and narrowing through a long differ
+		CompoundTag tag = new CompoundTag();
+		tag.putFloat("float", 3e9f);
+		tag.putDouble("double", -3e9);
+		tag.putFloat("nan", Float.NaN);
+		tag.putDouble("huge", 1e300);
+		tag.putLong("long", 0x1234567890L);
+		NBTView view = assertThrowsNoException(() -> NBTView.of(serialize(tag)));
+		for (String key : tag.keySet()) {
+			NumberTag<?> number = (NumberTag<?>) tag.get(key);
+			NBTView v = view.get(key);
+			assertEquals(key, number.asByte(), v.asByte());
+			assertEquals(key, number.asShort(), v.asShort());
+			assertEquals(key, number.asInt(), v.asInt());
+			assertEquals(key, number.asLong(), v.asLong());
+			assertEquals(key, number.asFloat(), v.asFloat());
+			assertEquals(key, number.asDouble(), v.asDouble());
+		}
+		assertEquals(Integer.MAX_VALUE, view.get("float").asInt());
+	}
+
+	public void testToTag() {
+		CompoundTag tag = createTestTag();
+		NBTView view = assertThrowsNoException(() -> NBTView.of(serialize(tag)));
+		assertEquals(tag, view.toTag());
+		assertEquals(tag.get("list"), view.get("list").toTag());
+		assertEquals(tag.get("empty"), view.get("empty").toTag());
+		assertEquals(new StringTag("a"), view.get("strings").get(0).toTag());
+
+		PathFilter filter = new PathFilter().include("int", "list.Age");
+		CompoundTag filtered = (CompoundTag) view.toTag(filter);
+		CompoundTag expected = (CompoundTag) assertThrowsNoException(() -> new NBTInputStream(new ByteArrayInputStream(serialize(tag))).readTag(Tag.DEFAULT_MAX_DEPTH, filter)).getTag();
+		assertEquals(expected, filtered);
+		assertEquals(2, filtered.size());
+		assertEquals(1, filtered.getListTag("list").asCompoundTagList().get(1).getInt("Age"));
+		assertFalse(filtered.getListTag("list").asCompoundTagList().get(1).containsKey("id"));
+	}
+
+	public void testBuffer() {
+		byte[] data = serialize(createTestTag());
+		ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 10);
+		buffer.put(new byte[5]).put(data).put(new byte[5]).flip();
+		buffer.position(5);
+		NBTView view = assertThrowsNoException(() -> NBTView.of(buffer));
+		assertEquals(5 + data.length, buffer.position());
+		assertEquals(createTestTag(), view.toTag());
+	}
+
+	public void testInvalid() {
+		byte[] data = serialize(createTestTag());
+		for (int length : new int[]{0, 1, 2, 3, 10, data.length / 2, data.length - 1}) {
+			assertThrowsException(() -> NBTView.of(Arrays.copyOf(data, length)), EOFException.class);
+		}
+		byte[] invalidType = {10, 0, 0, 13, 0, 1, 'a', 0};
+		assertThrowsException(() -> NBTView.of(invalidType), IOException.class);
+		byte[] negativeArray = {12, 0, 0, -1, -1, -1, -1};
+		assertThrowsException(() -> NBTView.of(negativeArray), IOException.class);
+
+		CompoundTag root = new CompoundTag();
+		CompoundTag c = root;
+		for (int i = 0; i < Tag.DEFAULT_MAX_DEPTH + 1; i++) {
+			CompoundTag child = new CompoundTag();
+			c.put("c", child);
+			c = child;
+		}
+		NBTBufferWriter writer = new NBTBufferWriter(16);
+		assertThrowsNoException(() -> writer.writeTag(root, Tag.DEFAULT_MAX_DEPTH + 1));
+		byte[] deep = Arrays.copyOf(writer.getBuffer().array(), writer.getBuffer().position());
+		assertThrowsException(() -> NBTView.of(deep), MaxDepthReachedException.class);
+	}
+}
@@ -0,0 +1,122 @@
+package net.querz.nbt.io;
+
+import net.querz.NBTTestCase;
+import net.querz.io.MaxDepthReachedException;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.Tag;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NBTVisitorTest extends NBTTestCase {
+
+	private NBTInputStream stream(byte[] data) {
+		return new NBTInputStream(new ByteArrayInputStream(data));
+	}
+
+	public void testVisitAll() {
+		CompoundTag c = createTestTag();
+		final List<String> events = new ArrayList<>();
+		NBTVisitor v = new NBTVisitor() {
+			@Override
+			public boolean visitKey(byte typeId, String key) {
+				events.add("key " + key);
+				return true;
+			}
+
+			@Override
+			public void visitInt(int value) {
+				events.add("int " + value);
+			}
+
+			@Override
+			public void visitString(String value) {
+				events.add("string " + value);
+			}
+
+			@Override
+			public void visitLongArray(long[] value) {
+				events.add("longs " + value.length);
+			}
+
+			@Override
+			public boolean startList(byte elementTypeId, int length) {
+				events.add("list " + length);
+				return true;
+			}
+		};
+		assertThrowsNoException(() -> stream(serialize(c)).readTag(v, Tag.DEFAULT_MAX_DEPTH));
+		assertTrue(events.contains("key int"));
+		assertTrue(events.contains("int 3"));
+		assertTrue(events.contains("int 14"));
+		assertTrue(events.contains("string minecraft:pig0"));
+		assertTrue(events.contains("longs 2"));
+		assertTrue(events.contains("list 3"));
+		assertTrue(events.contains("list 0"));
+		assertEquals("key ", events.get(0));
+	}
+
+	public void testSkip() {
+		CompoundTag c = createTestTag();
+		final List<String> strings = new ArrayList<>();
+		NBTVisitor v = new NBTVisitor() {
+			@Override
+			public boolean visitKey(byte typeId, String key) {
+				return !key.equals("nested");
+			}
+
+			@Override
+			public boolean startList(byte elementTypeId, int length) {
+				return false;
+			}
+
+			@Override
+			public void visitString(String value) {
+				strings.add(value);
+			}
+		};
+		byte[] data = serialize(c);
+		NBTInputStream in = stream(data);
+		assertThrowsNoException(() -> in.readTag(v, Tag.DEFAULT_MAX_DEPTH));
+		assertEquals(1, strings.size());
+		assertEquals("sevën", strings.get(0));
+		// everything has been consumed
+		assertThrowsNoException(() -> assertEquals(-1, in.read()));
+	}
+
+	public void testSkipTag() throws Exception {
+		CompoundTag c = createTestTag();
+		byte[] data = serialize(c);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		byte id = in.readByte();
+		in.readUTF();
+		Tag.skip(id, in, Tag.DEFAULT_MAX_DEPTH);
+		assertEquals(-1, in.read());
+		DataInputStream truncated = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 5));
+		truncated.readByte();
+		truncated.readUTF();
+		assertThrowsException(() -> Tag.skip(id, truncated, Tag.DEFAULT_MAX_DEPTH), EOFException.class);
+	}
+
+	public void testMaxDepth() {
+		CompoundTag root = new CompoundTag();
+		CompoundTag c = root;
+		for (int i = 0; i < 10; i++) {
+			CompoundTag n = new CompoundTag();
+			c.put("c", n);
+			c = n;
+		}
+		byte[] data = serialize(root);
+		assertThrowsRuntimeException(() -> {
+			try {
+				stream(data).readTag(new NBTVisitor() {}, 5);
+			} catch (IOException ex) {
+				fail(ex.getMessage());
+			}
+		}, MaxDepthReachedException.class);
+		assertThrowsNoException(() -> stream(data).readTag(new NBTVisitor() {}, 10));
+	}
+}
@@ -0,0 +1,58 @@
+package net.querz.nbt.io;
+
+import net.querz.NBTTestCase;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.Tag;
+import java.io.ByteArrayInputStream;
+
+public class StringCacheTest extends NBTTestCase {
+
+	public void testDeduplicate() {
+		StringCache cache = new StringCache(100);
+		assertEquals(128, cache.capacity());
+		assertEquals(1, new StringCache(1).capacity());
+		String a = new String("minecraft:stone");
+		String b = new String("minecraft:stone");
+		assertSame(a, cache.deduplicate(a));
+		assertSame(a, cache.deduplicate(b));
+		assertSame(a, cache.deduplicate(a));
+		assertEquals("minecraft:dirt", cache.deduplicate("minecraft:dirt"));
+		assertThrowsRuntimeException(() -> new StringCache(0), IllegalArgumentException.class);
+		assertThrowsRuntimeException(() -> new StringCache((1 << 30) + 1), IllegalArgumentException.class);
+	}
+
+	public void testRead() {
+		ListTag<CompoundTag> list = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 3; i++) {
+			CompoundTag c = new CompoundTag();
+			c.putString("Name", "minecraft:stone");
+			list.add(c);
+		}
+		CompoundTag root = new CompoundTag();
+		root.put("Palette", list);
+		byte[] data = serialize(root);
+
+		StringCache keys = new StringCache(16);
+		StringCache values = new StringCache(16);
+		ListTag<CompoundTag> deduplicated = read(data, keys, values);
+		assertEquals(list, deduplicated);
+		String key = deduplicated.get(0).keySet().iterator().next();
+		for (CompoundTag c : deduplicated) {
+			assertSame(key, c.keySet().iterator().next());
+			assertSame(deduplicated.get(0).getString("Name"), c.getString("Name"));
+		}
+		assertSame(key, keys.deduplicate("Name"));
+		assertSame(deduplicated.get(0).getString("Name"), values.deduplicate("minecraft:stone"));
+
+		ListTag<CompoundTag> keysOnly = read(data, keys, null);
+		assertSame(key, keysOnly.get(1).keySet().iterator().next());
+		assertNotSame(keysOnly.get(0).getString("Name"), keysOnly.get(1).getString("Name"));
+	}
+
+	private ListTag<CompoundTag> read(byte[] data, StringCache keys, StringCache values) {
+		NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(data), keys, values);
+		NamedTag tag = assertThrowsNoException(() -> in.readTag(Tag.DEFAULT_MAX_DEPTH));
+		return ((CompoundTag) tag.getTag()).getListTag("Palette").asCompoundTagList();
+	}
+}
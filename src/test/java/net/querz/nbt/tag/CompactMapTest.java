@@ -0,0 +1,125 @@
+package net.querz.nbt.tag;
+
+import net.querz.NBTTestCase;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+public class CompactMapTest extends NBTTestCase {
+
+	public void testAgainstHashMap() {
+		Random random = new Random(17);
+		for (int run = 0; run < 200; run++) {
+			CompactMap compact = new CompactMap();
+			Map<String, Tag<?>> reference = new HashMap<>();
+			for (int op = 0; op < 40; op++) {
+				String key = "k" + random.nextInt(14);
+				switch (random.nextInt(4)) {
+					case 0:
+						assertEquals(reference.remove(key), compact.remove(key));
+						break;
+					default:
+						IntTag value = new IntTag(random.nextInt());
+						assertEquals(reference.put(key, value), compact.put(key, value));
+				}
+				assertEquals(reference.size(), compact.size());
+				assertEquals(reference.get(key), compact.get(key));
+				assertEquals(reference.containsKey(key), compact.containsKey(key));
+				assertEquals(reference, compact);
+				assertEquals(reference.hashCode(), compact.hashCode());
+			}
+		}
+	}
+
+	public void testInsertionOrder() {
+		CompactMap map = new CompactMap();
+		for (int i = 0; i < CompactMap.MAX_ARRAY_SIZE; i++) {
+			map.put("key" + (CompactMap.MAX_ARRAY_SIZE - i), new ByteTag((byte) i));
+		}
+		int i = 0;
+		for (Map.Entry<String, Tag<?>> e : map.entrySet()) {
+			assertEquals("key" + (CompactMap.MAX_ARRAY_SIZE - i), e.getKey());
+			assertEquals(new ByteTag((byte) i++), e.getValue());
+		}
+		map.put("promoted", new ByteTag());
+		assertEquals(CompactMap.MAX_ARRAY_SIZE + 1, map.size());
+		assertEquals(new ByteTag((byte) 3), map.get("key5"));
+
+		// the insertion order is kept after the entries have been moved out of the arrays
+		map.remove("key3");
+		map.put("last", new ByteTag());
+		map.put("key1", new ByteTag((byte) 100));
+		StringBuilder order = new StringBuilder();
+		for (String key : map.keySet()) {
+			order.append(key).append(',');
+		}
+		assertEquals("key8,key7,key6,key5,key4,key2,key1,promoted,last,", order.toString());
+	}
+
+	public void testIterator() {
+		CompactMap map = new CompactMap();
+		map.put("a", new StringTag("a"));
+		map.put("b", new StringTag("b"));
+		map.put("c", new StringTag("c"));
+		Iterator<Map.Entry<String, Tag<?>>> iterator = map.entrySet().iterator();
+		assertThrowsRuntimeException(iterator::remove, IllegalStateException.class);
+		while (iterator.hasNext()) {
+			Map.Entry<String, Tag<?>> e = iterator.next();
+			if (e.getKey().equals("b")) {
+				iterator.remove();
+			} else {
+				e.setValue(new StringTag(e.getKey() + e.getKey()));
+			}
+		}
+		assertEquals(2, map.size());
+		assertEquals(new StringTag("aa"), map.get("a"));
+		assertEquals(new StringTag("cc"), map.get("c"));
+		assertNull(map.get("b"));
+		map.clear();
+		assertEquals(0, map.size());
+		assertFalse(map.entrySet().iterator().hasNext());
+	}
+
+	public void testConcurrentModification() {
+		CompactMap map = new CompactMap();
+		map.put("a", new StringTag("a"));
+		map.put("b", new StringTag("b"));
+		map.put("c", new StringTag("c"));
+
+		// removing another entry shifts the arrays
+		Iterator<Map.Entry<String, Tag<?>>> removed = map.entrySet().iterator();
+		removed.next();
+		map.remove("b");
+		assertTrue(removed.hasNext());
+		assertThrowsRuntimeException(removed::next, ConcurrentModificationException.class);
+
+		// adding an entry, replacing a value is not a structural modification
+		Iterator<Map.Entry<String, Tag<?>>> added = map.entrySet().iterator();
+		added.next();
+		map.put("a", new StringTag("aa"));
+		added.next();
+		map.put("d", new StringTag("d"));
+		assertThrowsRuntimeException(added::next, ConcurrentModificationException.class);
+		assertThrowsRuntimeException(added::remove, ConcurrentModificationException.class);
+
+		// the move to a HashMap must not end the iteration silently or break Iterator.remove()
+		for (int i = map.size(); i < CompactMap.MAX_ARRAY_SIZE; i++) {
+			map.put("key" + i, new IntTag(i));
+		}
+		Iterator<Map.Entry<String, Tag<?>>> migrated = map.entrySet().iterator();
+		migrated.next();
+		map.put("promoted", new ByteTag());
+		assertTrue(migrated.hasNext());
+		assertThrowsRuntimeException(migrated::next, ConcurrentModificationException.class);
+		assertThrowsRuntimeException(migrated::remove, ConcurrentModificationException.class);
+		assertEquals(CompactMap.MAX_ARRAY_SIZE + 1, map.size());
+
+		CompactMap cleared = new CompactMap();
+		cleared.put("a", new StringTag("a"));
+		Iterator<Map.Entry<String, Tag<?>>> afterClear = cleared.entrySet().iterator();
+		cleared.clear();
+		assertThrowsRuntimeException(afterClear::next, ConcurrentModificationException.class);
+	}
+}
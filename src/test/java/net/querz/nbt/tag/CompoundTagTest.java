@@ -359,4 +359,25 @@ public class CompoundTagTest extends NBTTestCase {
 		});
 		assertEquals(3, ct.size());
 	}
+
+	public void testUnmodifiableCopy() {
+		CompoundTag ct = createCompoundTag();
+		CompoundTag nested = new CompoundTag();
+		nested.putString("power", "15");
+		ct.put("nested", nested);
+		CompoundTag copy = ct.unmodifiableCopy();
+		assertEquals(ct, copy);
+		assertEquals(ct.hashCode(), copy.hashCode());
+		assertNotSame(ct.get("str"), copy.get("str"));
+		assertThrowsRuntimeException(() -> copy.putString("str", "bar"), UnsupportedOperationException.class);
+		assertThrowsRuntimeException(() -> copy.remove("b"), UnsupportedOperationException.class);
+		assertThrowsRuntimeException(copy::clear, UnsupportedOperationException.class);
+		assertThrowsRuntimeException(() -> copy.getCompoundTag("nested").putString("power", "0"), UnsupportedOperationException.class);
+		assertThrowsRuntimeException(() -> copy.iterator().next().setValue(new StringTag("bar")), UnsupportedOperationException.class);
+		nested.putString("power", "0");
+		assertEquals("15", copy.getCompoundTag("nested").getString("power"));
+		CompoundTag clone = copy.clone();
+		clone.putString("str", "bar");
+		assertEquals("bar", clone.getString("str"));
+	}
 }
@@ -55,4 +55,17 @@ public class FloatTagTest extends NBTTestCase {
 		assertTrue(0 > new FloatTag(5).compareTo(new FloatTag(7)));
 		assertThrowsRuntimeException(() -> new FloatTag(5).compareTo(null), NullPointerException.class);
 	}
+
+	public void testPrimitiveValue() {
+		FloatTag t = new FloatTag(-1.5e10f);
+		assertEquals(Float.valueOf(t.asFloat()).hashCode(), t.hashCode());
+		assertEquals(Float.valueOf(-1.5e10f), invokeGetValue(t));
+		assertEquals(Float.valueOf(-1.5e10f).intValue(), t.asInt());
+		assertEquals(Float.valueOf(-1.5e10f).byteValue(), t.asByte());
+		assertEquals(Float.valueOf(-1.5e10f).longValue(), t.asLong());
+		assertNotEquals(new FloatTag(0.0f), new FloatTag(-0.0f));
+		assertEquals(new FloatTag(Float.NaN).hashCode(), new FloatTag(Float.NaN).hashCode());
+		invokeSetValue(t, 2.5f);
+		assertEquals(2.5f, t.asFloat());
+	}
 }
@@ -2,6 +2,8 @@ package net.querz.nbt.tag;
 
 import net.querz.NBTTestCase;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.util.Arrays;
 
 public class IntArrayTagTest extends NBTTestCase {
@@ -50,6 +52,28 @@ public class IntArrayTagTest extends NBTTestCase {
 		assertTrue(t.equals(tt));
 	}
 
+	public void testSerializeLarge() {
+		// spans several blocks of the bulk transfer, the last one partially filled
+		int[] a = new int[5000];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = i * 0x01010101 - i;
+		}
+		IntArrayTag t = new IntArrayTag(a);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(expected);
+		assertThrowsNoException(() -> {
+			dos.writeByte(t.getID());
+			dos.writeUTF("");
+			dos.writeInt(a.length);
+			for (int i : a) {
+				dos.writeInt(i);
+			}
+		});
+		byte[] data = serialize(t);
+		assertTrue(Arrays.equals(expected.toByteArray(), data));
+		assertEquals(t, deserialize(data));
+	}
+
 	public void testCompareTo() {
 		IntArrayTag t = new IntArrayTag(new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE});
 		IntArrayTag t2 = new IntArrayTag(new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE});
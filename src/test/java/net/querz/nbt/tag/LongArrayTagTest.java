@@ -1,7 +1,12 @@
 package net.querz.nbt.tag;
 
 import net.querz.NBTTestCase;
+import net.querz.nbt.io.NBTInputStream;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.util.Arrays;
 
 public class LongArrayTagTest extends NBTTestCase {
@@ -50,6 +55,36 @@ public class LongArrayTagTest extends NBTTestCase {
 		assertTrue(t.equals(tt));
 	}
 
+	public void testSerializeLarge() {
+		// spans several blocks of the bulk transfer, the last one partially filled
+		long[] a = new long[3000];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = i * 0x0101010101010101L - i;
+		}
+		LongArrayTag t = new LongArrayTag(a);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(expected);
+		assertThrowsNoException(() -> {
+			dos.writeByte(t.getID());
+			dos.writeUTF("");
+			dos.writeInt(a.length);
+			for (long l : a) {
+				dos.writeLong(l);
+			}
+		});
+		byte[] data = serialize(t);
+		assertTrue(Arrays.equals(expected.toByteArray(), data));
+		assertEquals(t, deserialize(data));
+		byte[] truncated = Arrays.copyOf(data, data.length - 1);
+		assertThrowsException(() -> new NBTInputStream(new ByteArrayInputStream(truncated)).readTag(Tag.DEFAULT_MAX_DEPTH), EOFException.class);
+
+		// the block buffer of this thread still holds the large array, none of it may end up in a smaller one
+		LongArrayTag small = new LongArrayTag(new long[]{1, -2, 3});
+		byte[] smallData = serialize(small);
+		assertEquals(1 + 2 + 4 + 3 * 8, smallData.length);
+		assertEquals(small, deserialize(smallData));
+	}
+
 	public void testCompareTo() {
 		LongArrayTag t = new LongArrayTag(new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE});
 		LongArrayTag t2 = new LongArrayTag(new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE});
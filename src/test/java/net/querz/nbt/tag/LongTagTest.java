@@ -55,4 +55,15 @@ public class LongTagTest extends NBTTestCase {
 		assertTrue(0 > new LongTag(5).compareTo(new LongTag(7)));
 		assertThrowsRuntimeException(() -> new LongTag(5).compareTo(null), NullPointerException.class);
 	}
+
+	public void testPrimitiveValue() {
+		LongTag t = new LongTag(Long.MIN_VALUE + 1234567890123L);
+		assertEquals(Long.valueOf(t.asLong()).hashCode(), t.hashCode());
+		assertEquals(Long.valueOf(t.asLong()), invokeGetValue(t));
+		assertEquals((int) t.asLong(), t.asInt());
+		assertEquals((byte) t.asLong(), t.asByte());
+		assertEquals((double) t.asLong(), t.asDouble());
+		invokeSetValue(t, 42L);
+		assertEquals(42L, t.asLong());
+	}
 }
@@ -0,0 +1,89 @@
+package net.querz.nbt.tag;
+
+import net.querz.NBTTestCase;
+import net.querz.nbt.io.NBTDeserializer;
+
+public class PathFilterTest extends NBTTestCase {
+
+	private CompoundTag createChunkLikeTag() {
+		CompoundTag root = new CompoundTag();
+		root.putInt("DataVersion", 2230);
+		CompoundTag level = new CompoundTag();
+		level.putInt("xPos", 1);
+		level.putLongArray("Heightmap", new long[37]);
+		ListTag<CompoundTag> sections = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 3; i++) {
+			CompoundTag section = new CompoundTag();
+			section.putByte("Y", (byte) i);
+			section.putLongArray("BlockStates", new long[]{i});
+			section.putByteArray("SkyLight", new byte[2048]);
+			sections.add(section);
+		}
+		level.put("Sections", sections);
+		CompoundTag structures = new CompoundTag();
+		structures.put("Starts", new CompoundTag());
+		level.put("Structures", structures);
+		root.put("Level", level);
+		return root;
+	}
+
+	private CompoundTag read(CompoundTag tag, PathFilter filter) {
+		byte[] data = serialize(tag);
+		return (CompoundTag) assertThrowsNoException(() -> new NBTDeserializer(false, filter).fromBytes(data)).getTag();
+	}
+
+	public void testInclude() {
+		CompoundTag c = read(createChunkLikeTag(), new PathFilter().include("DataVersion", "Level.Sections[].BlockStates", "Level.Sections.Y"));
+		assertEquals(2230, c.getInt("DataVersion"));
+		CompoundTag level = c.getCompoundTag("Level");
+		assertEquals(1, level.size());
+		ListTag<CompoundTag> sections = level.getListTag("Sections").asCompoundTagList();
+		assertEquals(3, sections.size());
+		for (int i = 0; i < 3; i++) {
+			CompoundTag section = sections.get(i);
+			assertEquals(2, section.size());
+			assertEquals(i, section.getByte("Y"));
+			assertEquals(i, section.getLongArray("BlockStates")[0]);
+		}
+	}
+
+	public void testIncludeSubtree() {
+		CompoundTag c = read(createChunkLikeTag(), new PathFilter().include("Level.Structures"));
+		assertEquals(1, c.size());
+		assertEquals(1, c.getCompoundTag("Level").size());
+		assertNotNull(c.getCompoundTag("Level").getCompoundTag("Structures").getCompoundTag("Starts"));
+	}
+
+	public void testExclude() {
+		CompoundTag c = read(createChunkLikeTag(), new PathFilter().exclude("Level.Structures", "Level.Sections.SkyLight"));
+		CompoundTag level = c.getCompoundTag("Level");
+		assertEquals(2230, c.getInt("DataVersion"));
+		assertFalse(level.containsKey("Structures"));
+		assertEquals(1, level.getInt("xPos"));
+		assertEquals(37, level.getLongArray("Heightmap").length);
+		for (CompoundTag section : level.getListTag("Sections").asCompoundTagList()) {
+			assertFalse(section.containsKey("SkyLight"));
+			assertTrue(section.containsKey("BlockStates"));
+		}
+	}
+
+	public void testExcludeBelowInclude() {
+		CompoundTag c = read(createChunkLikeTag(), new PathFilter().include("Level").exclude("Level.Sections"));
+		assertFalse(c.containsKey("DataVersion"));
+		CompoundTag level = c.getCompoundTag("Level");
+		assertEquals(3, level.size());
+		assertFalse(level.containsKey("Sections"));
+	}
+
+	public void testEmptyFilter() {
+		CompoundTag tag = createChunkLikeTag();
+		assertEquals(tag, read(tag, new PathFilter()));
+		assertEquals(tag, read(tag, null));
+	}
+
+	public void testInvalidPath() {
+		assertThrowsRuntimeException(() -> new PathFilter().include(""), IllegalArgumentException.class);
+		assertThrowsRuntimeException(() -> new PathFilter().include("Level..Sections"), IllegalArgumentException.class);
+		assertThrowsRuntimeException(() -> new PathFilter().exclude((String) null), IllegalArgumentException.class);
+	}
+}